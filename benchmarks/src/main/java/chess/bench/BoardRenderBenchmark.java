@@ -0,0 +1,183 @@
+package chess.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.imageio.ImageIO;
+import java.awt.AlphaComposite;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Image;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One frame of the board drawn the way ChessGameGUI.paintComponent draws it, into an off-screen image
+ * the size of the game window: {@code paint} scales the full-size images on each paint, as the GUI
+ * used to, and {@code paintCached} draws the copies kept by SpriteCache at the tile size.
+ * {@code moveCached} is what the GUI now does after a move: it redraws the two squares that changed
+ * in its board and piece layers and repaints only them. The GUI itself needs a window and a connected
+ * game, so the frame is drawn here from the same images and layout.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Benchmark)
+public class BoardRenderBenchmark {
+    private static final MethodHandle GET_NAME = Game.method(Game.CHESS, "getName", false, String.class);
+    private static final Class<?> SPRITE_CACHE = Game.type("SpriteCache");
+    private static final MethodHandle PUT_SPRITE = Game.method(SPRITE_CACHE, "put", false, void.class, String.class, Image.class, int.class);
+    private static final MethodHandle GET_SPRITE = Game.method(SPRITE_CACHE, "get", false, Image.class, String.class, int.class, int.class,
+            GraphicsConfiguration.class);
+
+    @Param({"1280x720", "2560x1440"})
+    public String window;
+
+    private final Map<String, Image> pieceImages = new HashMap<>();
+    private Image backgroundImage;
+    private Object[][] board;
+    private BufferedImage frame;
+    private Graphics2D graphics;
+    private Object sprites;
+    private BufferedImage boardLayer;
+    private BufferedImage pieceLayer;
+    private int movedPiece = 0; // the square the moving knight stands on in moveCached
+
+    @Setup
+    public void setUp() throws Throwable {
+        for (String piece : new String[] {"wP", "wR", "wN", "wB", "wQ", "wK", "bP", "bR", "bN", "bB", "bQ", "bK"}) {
+            pieceImages.put(piece, load("/pieces/" + piece + ".png"));
+        }
+        backgroundImage = load("/whiteBoard.png");
+        board = Game.newBoard(Game.newBoardState(PieceMoveBenchmark.POSITION), Game.WHITE);
+        String[] size = window.split("x");
+        frame = new BufferedImage(Integer.parseInt(size[0]), Integer.parseInt(size[1]), BufferedImage.TYPE_INT_RGB);
+        graphics = frame.createGraphics();
+        sprites = Game.constructor(SPRITE_CACHE).invoke();
+        PUT_SPRITE.invokeExact(sprites, (Object) "board", (Object) backgroundImage, Transparency.OPAQUE);
+        for (Map.Entry<String, Image> piece : pieceImages.entrySet()) {
+            PUT_SPRITE.invokeExact(sprites, (Object) piece.getKey(), (Object) piece.getValue(), Transparency.TRANSLUCENT);
+        }
+
+        paintCached();
+        boardLayer = new BufferedImage(frame.getWidth(), frame.getHeight(), BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = boardLayer.createGraphics();
+        g.drawImage(frame, 0, 0, null);
+        g.dispose();
+        int boardSize = Math.min(frame.getWidth(), frame.getHeight());
+        pieceLayer = new BufferedImage(boardSize, boardSize, BufferedImage.TYPE_INT_ARGB);
+    }
+
+    private static Image load(String path) throws IOException {
+        return ImageIO.read(BoardRenderBenchmark.class.getResource(path));
+    }
+
+    @TearDown
+    public void tearDown() {
+        graphics.dispose();
+    }
+
+    @Benchmark
+    public BufferedImage paint() throws Throwable {
+        int width = frame.getWidth();
+        int height = frame.getHeight();
+        int tileSize = Math.min(width, height) / Game.BOARD_SIZE;
+        int horizontalMargin = width > height ? (width - height) / 2 : 0;
+        int verticalMargin = width > height ? 0 : (height - width) / 2;
+        int pieceSize = tileSize * 8 / 10;
+        int pieceMargin = (tileSize - pieceSize) / 2;
+
+        graphics.setColor(Color.DARK_GRAY);
+        graphics.fillRect(0, 0, width, height);
+        graphics.drawImage(backgroundImage, horizontalMargin, verticalMargin, tileSize * Game.BOARD_SIZE, tileSize * Game.BOARD_SIZE, null);
+        for (int row = 0; row < Game.BOARD_SIZE; row++) {
+            for (int col = 0; col < Game.BOARD_SIZE; col++) {
+                Object piece = board[row][col];
+                if (piece != null) {
+                    Image image = pieceImages.get((String) (Object) GET_NAME.invokeExact(piece));
+                    graphics.drawImage(image, col * tileSize + pieceMargin + horizontalMargin, row * tileSize + pieceMargin + verticalMargin,
+                            pieceSize, pieceSize, null);
+                }
+            }
+        }
+        return frame;
+    }
+
+    @Benchmark
+    public BufferedImage paintCached() throws Throwable {
+        int width = frame.getWidth();
+        int height = frame.getHeight();
+        int tileSize = Math.min(width, height) / Game.BOARD_SIZE;
+        int horizontalMargin = width > height ? (width - height) / 2 : 0;
+        int verticalMargin = width > height ? 0 : (height - width) / 2;
+        int pieceSize = tileSize * 8 / 10;
+        int pieceMargin = (tileSize - pieceSize) / 2;
+        Object configuration = graphics.getDeviceConfiguration();
+
+        graphics.setColor(Color.DARK_GRAY);
+        graphics.fillRect(0, 0, width, height);
+        int boardSize = tileSize * Game.BOARD_SIZE;
+        graphics.drawImage((Image) (Object) GET_SPRITE.invokeExact(sprites, (Object) "board", boardSize, boardSize, configuration),
+                horizontalMargin, verticalMargin, null);
+        for (int row = 0; row < Game.BOARD_SIZE; row++) {
+            for (int col = 0; col < Game.BOARD_SIZE; col++) {
+                Object piece = board[row][col];
+                if (piece != null) {
+                    Image image = (Image) (Object) GET_SPRITE.invokeExact(sprites, GET_NAME.invokeExact(piece), pieceSize, pieceSize, configuration);
+                    graphics.drawImage(image, col * tileSize + pieceMargin + horizontalMargin, row * tileSize + pieceMargin + verticalMargin, null);
+                }
+            }
+        }
+        return frame;
+    }
+
+    @Benchmark
+    public BufferedImage moveCached() throws Throwable {
+        int width = frame.getWidth();
+        int height = frame.getHeight();
+        int tileSize = Math.min(width, height) / Game.BOARD_SIZE;
+        int horizontalMargin = width > height ? (width - height) / 2 : 0;
+        int verticalMargin = width > height ? 0 : (height - width) / 2;
+        int pieceSize = tileSize * 8 / 10;
+        int pieceMargin = (tileSize - pieceSize) / 2;
+        Image knight = (Image) (Object) GET_SPRITE.invokeExact(sprites, (Object) "wN", pieceSize, pieceSize, (Object) graphics.getDeviceConfiguration());
+
+        // A knight moves between two squares of the piece layer
+        int from = movedPiece;
+        int to = movedPiece = from == 0 ? 17 : 0;
+        Graphics2D layer = pieceLayer.createGraphics();
+        layer.setComposite(AlphaComposite.Clear);
+        layer.fillRect(from % Game.BOARD_SIZE * tileSize, from / Game.BOARD_SIZE * tileSize, tileSize, tileSize);
+        layer.setComposite(AlphaComposite.SrcOver);
+        layer.drawImage(knight, to % Game.BOARD_SIZE * tileSize + pieceMargin, to / Game.BOARD_SIZE * tileSize + pieceMargin, null);
+        layer.dispose();
+
+        // Each changed square is repainted through its own clip, as Swing does for repaint(x, y, w, h)
+        for (int square : new int[] {from, to}) {
+            graphics.setClip(horizontalMargin + square % Game.BOARD_SIZE * tileSize, verticalMargin + square / Game.BOARD_SIZE * tileSize,
+                    tileSize, tileSize);
+            graphics.drawImage(boardLayer, 0, 0, null);
+            graphics.drawImage(pieceLayer, horizontalMargin, verticalMargin, null);
+        }
+        graphics.setClip(null);
+        return frame;
+    }
+}
@@ -0,0 +1,50 @@
+package chess.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.invoke.MethodHandle;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Legal move generation and evaluation in a middlegame position, the inner loop of every search.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class EngineBenchmark {
+    private static final MethodHandle GENERATE_LEGAL = Game.method(Game.type("MoveGenerator"), "generateLegal", true, void.class, Game.BOARD_STATE, Game.MOVE_LIST);
+    private static final MethodHandle EVALUATE = Game.method(Game.type("Evaluator"), "evaluate", true, int.class, Game.BOARD_STATE);
+    private static final MethodHandle SIZE = Game.method(Game.MOVE_LIST, "size", false, int.class);
+
+    private Object state;
+    private Object moves;
+
+    @Setup
+    public void setUp() throws Throwable {
+        state = Game.newBoardState(PieceMoveBenchmark.POSITION);
+        moves = Game.constructor(Game.MOVE_LIST).invoke();
+    }
+
+    @Benchmark
+    public int generateLegal() throws Throwable {
+        GENERATE_LEGAL.invokeExact(state, moves);
+        return (int) SIZE.invokeExact(moves);
+    }
+
+    @Benchmark
+    public int evaluate() throws Throwable {
+        return (int) EVALUATE.invokeExact(state);
+    }
+}
@@ -0,0 +1,102 @@
+package chess.bench;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+
+/**
+ * Access to the game's classes, which are in the default package and so cannot be imported by
+ * the benchmarks (JMH needs them in a named package). The method handles are looked up once and kept
+ * in static final fields, where the JIT compiler treats them as constants and inlines the calls.
+ */
+final class Game {
+    static final Class<?> CHESS = type("Chess");
+    static final Class<?> BOARD_STATE = type("BoardState");
+    static final Class<?> MOVE_LIST = type("MoveList");
+    static final Class<?> CHESS_MESSAGE = type("ChessMessage");
+    static final Class<?> BOARD = CHESS.arrayType().arrayType(); // Chess[][]
+
+    static final int BOARD_SIZE = 8;
+    static final int WHITE = 1;
+    static final int BLACK = -1;
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    private Game() {
+    }
+
+    static Class<?> type(String name) {
+        try {
+            return Class.forName(name);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * A public instance or static method, typed with Object in place of every reference type so the
+     * benchmarks can call it with invokeExact.
+     */
+    static MethodHandle method(Class<?> owner, String name, boolean isStatic, Class<?> returnType, Class<?>... parameters) {
+        try {
+            MethodType type = MethodType.methodType(returnType, parameters);
+            MethodHandle handle = isStatic ? LOOKUP.findStatic(owner, name, type) : LOOKUP.findVirtual(owner, name, type);
+            return handle.asType(erase(handle.type()));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static MethodHandle constructor(Class<?> owner, Class<?>... parameters) {
+        try {
+            MethodHandle handle = LOOKUP.findConstructor(owner, MethodType.methodType(void.class, parameters));
+            return handle.asType(erase(handle.type()));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Replaces every reference type by Object, keeping primitives so they are not boxed
+    private static MethodType erase(MethodType type) {
+        MethodType erased = type.changeReturnType(erase(type.returnType()));
+        for (int i = 0; i < type.parameterCount(); i++) {
+            erased = erased.changeParameterType(i, erase(type.parameterType(i)));
+        }
+        return erased;
+    }
+
+    private static Class<?> erase(Class<?> type) {
+        return type.isPrimitive() ? type : Object.class;
+    }
+
+    static Object newBoardState(String fen) throws Throwable {
+        Object state = constructor(BOARD_STATE).invoke();
+        method(BOARD_STATE, "setFen", false, void.class, String.class).invoke(state, fen);
+        return state;
+    }
+
+    /**
+     * The Chess[][] board of a position as the game's GUI holds it, seen by the given colour.
+     */
+    static Object[][] newBoard(Object state, int viewer) throws Throwable {
+        MethodHandle pieceAt = method(BOARD_STATE, "pieceAt", false, int.class, int.class);
+        MethodHandle square = method(BOARD_STATE, "square", true, int.class, int.class, int.class, int.class);
+        Object[][] board = (Object[][]) Array.newInstance(CHESS, BOARD_SIZE, BOARD_SIZE);
+        for (int row = 0; row < BOARD_SIZE; row++) {
+            for (int col = 0; col < BOARD_SIZE; col++) {
+                int piece = (int) pieceAt.invoke(state, (int) square.invoke(row, col, viewer));
+                board[row][col] = piece < 0 ? null : newPiece(piece % 6, piece < 6 ? WHITE : BLACK);
+            }
+        }
+        return board;
+    }
+
+    /**
+     * A piece of the GUI's model from its BoardState type, as ChessGame creates them.
+     */
+    static Object newPiece(int type, int colour) throws Throwable {
+        String[] names = {"Pawn", "Knight", "Bishop", "Rook", "Queen", "King"};
+        return constructor(type(names[type]), int.class).invoke(colour);
+    }
+}
@@ -0,0 +1,83 @@
+package chess.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.invoke.MethodHandle;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Move checks of each piece type in a middlegame position, the way the game checks a dropped piece:
+ * {@code isLegalMove} generates the legal moves and looks the move up for each target, as
+ * ChessGame.isLegalMove does, and {@code findMove} looks up every target in one list of legal moves.
+ * Each call tries the piece against all 64 squares.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class PieceMoveBenchmark {
+    static final String POSITION = "r1bqk2r/pppp1ppp/2n2n2/2b1p3/2B1P3/3P1N2/PPP2PPP/RNBQK2R w KQkq - 1 5";
+
+    private static final Class<?> MOVE_GENERATOR = Game.type("MoveGenerator");
+    private static final MethodHandle GENERATE_LEGAL = Game.method(MOVE_GENERATOR, "generateLegal", true, void.class, Game.BOARD_STATE, Game.MOVE_LIST);
+    private static final MethodHandle FIND_MOVE = Game.method(MOVE_GENERATOR, "findMove", true, int.class, Game.MOVE_LIST, int.class, int.class, int.class);
+    private static final MethodHandle PIECE_AT = Game.method(Game.BOARD_STATE, "pieceAt", false, int.class, int.class);
+    private static final int NO_MOVE = 0; // Move.NONE
+    private static final int QUEEN = 4; // BoardState.QUEEN, the promotion the GUI asks for first
+
+    @Param({"PAWN", "KNIGHT", "BISHOP", "ROOK", "QUEEN", "KING"})
+    public String piece;
+
+    private Object state;
+    private Object moves;
+    private int from;
+
+    @Setup
+    public void setUp() throws Throwable {
+        state = Game.newBoardState(POSITION);
+        moves = Game.constructor(Game.MOVE_LIST).invoke();
+        int type = List.of("PAWN", "KNIGHT", "BISHOP", "ROOK", "QUEEN", "KING").indexOf(piece); // white piece code
+        // The first white piece of the type, from a1 upwards
+        from = 0;
+        while ((int) PIECE_AT.invokeExact(state, from) != type) {
+            from++;
+        }
+    }
+
+    @Benchmark
+    public int isLegalMove() throws Throwable {
+        int legal = 0;
+        for (int to = 0; to < 64; to++) {
+            GENERATE_LEGAL.invokeExact(state, moves);
+            if ((int) FIND_MOVE.invokeExact(moves, from, to, QUEEN) != NO_MOVE) {
+                legal++;
+            }
+        }
+        return legal;
+    }
+
+    @Benchmark
+    public int findMove() throws Throwable {
+        GENERATE_LEGAL.invokeExact(state, moves);
+        int legal = 0;
+        for (int to = 0; to < 64; to++) {
+            if ((int) FIND_MOVE.invokeExact(moves, from, to, QUEEN) != NO_MOVE) {
+                legal++;
+            }
+        }
+        return legal;
+    }
+}
@@ -0,0 +1,67 @@
+package chess.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.invoke.MethodHandle;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encoding and decoding one message of each kind through ChessMessageCodec, as the server does for
+ * every frame it reads or sends.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class ProtocolBenchmark {
+    private static final Class<?> CODEC = Game.type("ChessMessageCodec");
+    private static final MethodHandle ENCODE = Game.method(CODEC, "encode", true, void.class, Game.CHESS_MESSAGE, ByteBuffer.class);
+    private static final MethodHandle ENCODE_FRAME = Game.method(CODEC, "encode", true, byte[].class, Game.CHESS_MESSAGE);
+    private static final MethodHandle DECODE = Game.method(CODEC, "decode", true, Game.CHESS_MESSAGE, ByteBuffer.class);
+    private static final MethodHandle NEW_MESSAGE = Game.constructor(Game.CHESS_MESSAGE, int.class, int.class, Object.class);
+
+    @Param({"MOVE", "PLACE", "SNAPSHOT"})
+    public String type;
+
+    private Object message;
+    private final ByteBuffer buffer = ByteBuffer.allocate(64);
+    private ByteBuffer frame;
+
+    @Setup
+    public void setUp() throws Throwable {
+        int messageType = Game.CHESS_MESSAGE.getField(type).getInt(null);
+        Object data = switch (type) {
+            case "MOVE" -> new int[] {6, 4, 4, 4};
+            case "PLACE" -> new int[] {1, 4, 0, 4};
+            default -> PieceMoveBenchmark.POSITION;
+        };
+        message = NEW_MESSAGE.invokeExact(messageType, 1, data);
+        frame = ByteBuffer.wrap((byte[]) (Object) ENCODE_FRAME.invokeExact(message));
+    }
+
+    @Benchmark
+    public ByteBuffer encode() throws Throwable {
+        buffer.clear();
+        ENCODE.invokeExact(message, (Object) buffer);
+        return buffer;
+    }
+
+    @Benchmark
+    public Object decode() throws Throwable {
+        frame.rewind();
+        return DECODE.invokeExact((Object) frame);
+    }
+}
@@ -0,0 +1,246 @@
+/**
+ * Precomputed attack tables and square helpers for the bitboard board representation.
+ * Squares are numbered 0 (a1) to 63 (h8), rank by rank, so bit n of a bitboard is square n.
+ */
+public final class Bitboards {
+    public static final long FILE_A = 0x0101010101010101L;
+    public static final long FILE_H = FILE_A << 7;
+    public static final long RANK_1 = 0xFFL;
+    public static final long RANK_8 = RANK_1 << 56;
+
+    private static final long[] KNIGHT_ATTACKS = new long[64];
+    private static final long[] KING_ATTACKS = new long[64];
+    private static final long[][] PAWN_ATTACKS = new long[2][64];
+    private static final long[][] BETWEEN = new long[64][64];
+    private static final long[][] LINE = new long[64][64];
+
+    // Magic bitboard tables for sliding pieces, one flat table per piece type
+    private static final long[] ROOK_MASKS = new long[64];
+    private static final long[] ROOK_MAGICS = new long[64];
+    private static final int[] ROOK_SHIFTS = new int[64];
+    private static final int[] ROOK_OFFSETS = new int[64];
+    private static final long[] ROOK_TABLE;
+    private static final long[] BISHOP_MASKS = new long[64];
+    private static final long[] BISHOP_MAGICS = new long[64];
+    private static final int[] BISHOP_SHIFTS = new int[64];
+    private static final int[] BISHOP_OFFSETS = new int[64];
+    private static final long[] BISHOP_TABLE;
+
+    private static final int[][] ROOK_DIRECTIONS = {{1, 0}, {-1, 0}, {0, 1}, {0, -1}};
+    private static final int[][] BISHOP_DIRECTIONS = {{1, 1}, {1, -1}, {-1, 1}, {-1, -1}};
+
+    static {
+        initLeaperTables();
+        initLineTables();
+        ROOK_TABLE = initMagics(ROOK_DIRECTIONS, ROOK_MASKS, ROOK_MAGICS, ROOK_SHIFTS, ROOK_OFFSETS);
+        BISHOP_TABLE = initMagics(BISHOP_DIRECTIONS, BISHOP_MASKS, BISHOP_MAGICS, BISHOP_SHIFTS, BISHOP_OFFSETS);
+    }
+
+    private Bitboards() {
+    }
+
+    public static long bit(int square) {
+        return 1L << square;
+    }
+
+    public static int rank(int square) {
+        return square >>> 3;
+    }
+
+    public static int file(int square) {
+        return square & 7;
+    }
+
+    /**
+     * Index of the least significant set bit, i.e. the lowest square in the set.
+     */
+    public static int lsb(long bitboard) {
+        return Long.numberOfTrailingZeros(bitboard);
+    }
+
+    public static long knightAttacks(int square) {
+        return KNIGHT_ATTACKS[square];
+    }
+
+    public static long kingAttacks(int square) {
+        return KING_ATTACKS[square];
+    }
+
+    /**
+     * Squares attacked by a pawn of the given side (0 white, 1 black) standing on the square.
+     */
+    public static long pawnAttacks(int side, int square) {
+        return PAWN_ATTACKS[side][square];
+    }
+
+    public static long rookAttacks(int square, long occupied) {
+        return ROOK_TABLE[ROOK_OFFSETS[square]
+                + (int) (((occupied & ROOK_MASKS[square]) * ROOK_MAGICS[square]) >>> ROOK_SHIFTS[square])];
+    }
+
+    public static long bishopAttacks(int square, long occupied) {
+        return BISHOP_TABLE[BISHOP_OFFSETS[square]
+                + (int) (((occupied & BISHOP_MASKS[square]) * BISHOP_MAGICS[square]) >>> BISHOP_SHIFTS[square])];
+    }
+
+    public static long queenAttacks(int square, long occupied) {
+        return rookAttacks(square, occupied) | bishopAttacks(square, occupied);
+    }
+
+    /**
+     * Squares strictly between two aligned squares, or 0 if they share no rank, file or diagonal.
+     */
+    public static long between(int from, int to) {
+        return BETWEEN[from][to];
+    }
+
+    /**
+     * The full rank, file or diagonal through two aligned squares, or 0 if they are not aligned.
+     */
+    public static long line(int from, int to) {
+        return LINE[from][to];
+    }
+
+    private static void initLeaperTables() {
+        int[][] knightSteps = {{1, 2}, {2, 1}, {2, -1}, {1, -2}, {-1, -2}, {-2, -1}, {-2, 1}, {-1, 2}};
+        int[][] kingSteps = {{1, 0}, {1, 1}, {0, 1}, {-1, 1}, {-1, 0}, {-1, -1}, {0, -1}, {1, -1}};
+        for (int square = 0; square < 64; square++) {
+            KNIGHT_ATTACKS[square] = stepAttacks(square, knightSteps);
+            KING_ATTACKS[square] = stepAttacks(square, kingSteps);
+            PAWN_ATTACKS[0][square] = stepAttacks(square, new int[][] {{1, -1}, {1, 1}});
+            PAWN_ATTACKS[1][square] = stepAttacks(square, new int[][] {{-1, -1}, {-1, 1}});
+        }
+    }
+
+    private static long stepAttacks(int square, int[][] steps) {
+        long attacks = 0;
+        for (int[] step : steps) {
+            int rank = rank(square) + step[0];
+            int file = file(square) + step[1];
+            if (rank >= 0 && rank < 8 && file >= 0 && file < 8) {
+                attacks |= bit(rank * 8 + file);
+            }
+        }
+        return attacks;
+    }
+
+    private static void initLineTables() {
+        long[] rookRays = new long[64];
+        long[] bishopRays = new long[64];
+        for (int square = 0; square < 64; square++) {
+            rookRays[square] = slowAttacks(square, 0, ROOK_DIRECTIONS, false);
+            bishopRays[square] = slowAttacks(square, 0, BISHOP_DIRECTIONS, false);
+        }
+
+        for (int from = 0; from < 64; from++) {
+            for (int to = 0; to < 64; to++) {
+                long fromBit = bit(from);
+                long toBit = bit(to);
+                if ((rookRays[from] & toBit) != 0) {
+                    BETWEEN[from][to] = slowAttacks(from, toBit, ROOK_DIRECTIONS, false)
+                            & slowAttacks(to, fromBit, ROOK_DIRECTIONS, false);
+                    LINE[from][to] = (rookRays[from] & rookRays[to]) | fromBit | toBit;
+                } else if ((bishopRays[from] & toBit) != 0) {
+                    BETWEEN[from][to] = slowAttacks(from, toBit, BISHOP_DIRECTIONS, false)
+                            & slowAttacks(to, fromBit, BISHOP_DIRECTIONS, false);
+                    LINE[from][to] = (bishopRays[from] & bishopRays[to]) | fromBit | toBit;
+                }
+            }
+        }
+    }
+
+    /**
+     * Walks rays square by square; only used to build the tables.
+     * With {@code edgeMask} set, the last square of each ray is dropped, which gives the relevance mask.
+     */
+    private static long slowAttacks(int square, long occupied, int[][] directions, boolean edgeMask) {
+        long attacks = 0;
+        for (int[] direction : directions) {
+            int rank = rank(square) + direction[0];
+            int file = file(square) + direction[1];
+            while (rank >= 0 && rank < 8 && file >= 0 && file < 8) {
+                int next = rank * 8 + file;
+                if (edgeMask) {
+                    int nextRank = rank + direction[0];
+                    int nextFile = file + direction[1];
+                    if (nextRank < 0 || nextRank > 7 || nextFile < 0 || nextFile > 7) {
+                        break;
+                    }
+                }
+                attacks |= bit(next);
+                if ((occupied & bit(next)) != 0) {
+                    break;
+                }
+                rank += direction[0];
+                file += direction[1];
+            }
+        }
+        return attacks;
+    }
+
+    /**
+     * Finds a magic multiplier for every square and fills the shared attack table.
+     * The search is seeded per rank with values known to converge quickly, so the tables are identical on every run.
+     */
+    private static long[] initMagics(int[][] directions, long[] masks, long[] magics, int[] shifts, int[] offsets) {
+        int total = 0;
+        for (int square = 0; square < 64; square++) {
+            masks[square] = slowAttacks(square, 0, directions, true);
+            shifts[square] = 64 - Long.bitCount(masks[square]);
+            offsets[square] = total;
+            total += 1 << Long.bitCount(masks[square]);
+        }
+
+        long[] table = new long[total];
+        long[] occupancies = new long[4096];
+        long[] references = new long[4096];
+        int[] epochs = new int[4096];
+        long[] rankSeeds = {728, 10316, 55013, 32803, 12281, 15100, 16645, 255};
+        int epoch = 0;
+
+        for (int square = 0; square < 64; square++) {
+            long mask = masks[square];
+            int size = 0;
+            long subset = 0;
+            do {
+                occupancies[size] = subset;
+                references[size] = slowAttacks(square, subset, directions, false);
+                size++;
+                subset = (subset - mask) & mask; // Carry-Rippler enumeration of all subsets
+            } while (subset != 0);
+
+            int offset = offsets[square];
+            int shift = shifts[square];
+            long seed = rankSeeds[rank(square)];
+            boolean found = false;
+            while (!found) {
+                long magic = -1;
+                for (int i = 0; i < 3; i++) {
+                    // xorshift64*; and-ing three values gives the sparse candidates magics tend to be
+                    seed ^= seed >>> 12;
+                    seed ^= seed << 25;
+                    seed ^= seed >>> 27;
+                    magic &= seed * 2685821657736338717L;
+                }
+                if (Long.bitCount((mask * magic) & 0xFF00000000000000L) < 6) {
+                    continue;
+                }
+
+                epoch++;
+                found = true;
+                for (int i = 0; i < size; i++) {
+                    int index = (int) ((occupancies[i] * magic) >>> shift);
+                    if (epochs[index] != epoch) {
+                        epochs[index] = epoch;
+                        table[offset + index] = references[i];
+                    } else if (table[offset + index] != references[i]) {
+                        found = false;
+                        break;
+                    }
+                }
+                magics[square] = magic;
+            }
+        }
+        return table;
+    }
+}
@@ -0,0 +1,527 @@
+import java.util.Arrays;
+
+/**
+ * Bitboard representation of a chess position: twelve piece bitboards plus side to move,
+ * castling rights and the en passant square.
+ * Squares are absolute (0 = a1, 63 = h8); use {@link #square(int, int, int)} to convert the
+ * row/column coordinates of a player's view of the board.
+ */
+public final class BoardState {
+    // Sides
+    public static final int WHITE = 0;
+    public static final int BLACK = 1;
+
+    // Piece types, numbered like the piece codes of ChessMessage.PLACE
+    public static final int PAWN = 0;
+    public static final int KNIGHT = 1;
+    public static final int BISHOP = 2;
+    public static final int ROOK = 3;
+    public static final int QUEEN = 4;
+    public static final int KING = 5;
+    public static final int NO_PIECE = -1;
+
+    // Castling rights
+    public static final int WHITE_KINGSIDE = 1;
+    public static final int WHITE_QUEENSIDE = 2;
+    public static final int BLACK_KINGSIDE = 4;
+    public static final int BLACK_QUEENSIDE = 8;
+    public static final int NO_SQUARE = -1;
+
+    public static final String START_FEN = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+    private static final String PIECE_LETTERS = "pnbrqk";
+
+    // Castling rights kept when a piece moves from or to a square
+    private static final int[] CASTLING_MASK = new int[64];
+
+    static {
+        Arrays.fill(CASTLING_MASK, 15);
+        CASTLING_MASK[0] &= ~WHITE_QUEENSIDE;
+        CASTLING_MASK[7] &= ~WHITE_KINGSIDE;
+        CASTLING_MASK[4] &= ~(WHITE_KINGSIDE | WHITE_QUEENSIDE);
+        CASTLING_MASK[56] &= ~BLACK_QUEENSIDE;
+        CASTLING_MASK[63] &= ~BLACK_KINGSIDE;
+        CASTLING_MASK[60] &= ~(BLACK_KINGSIDE | BLACK_QUEENSIDE);
+    }
+
+    private final long[] pieces = new long[12]; // indexed by piece(side, type)
+    private final long[] occupancy = new long[2];
+    private long occupied;
+    private final byte[] mailbox = new byte[64];
+    private int sideToMove;
+    private int castlingRights;
+    private int enPassantSquare;
+    private int halfmoveClock;
+    private int fullmoveNumber;
+    private long hash; // Zobrist key, updated incrementally
+    private int psqtScore; // packed Evaluator score of every piece, updated incrementally
+    private int phase;
+
+    // One packed record per move played: move, captured piece, castling rights, en passant square, halfmove clock
+    private long[] undoStack = new long[256];
+    private long[] hashStack = new long[256]; // hash of the position before each move
+    private int ply;
+
+    public BoardState() {
+        clear();
+    }
+
+    /**
+     * Converts a row/column on a player's view of the board into an absolute square.
+     * Each player sees their own pieces on rows 6 and 7, so the view is flipped vertically for black.
+     */
+    public static int square(int row, int col, int colour) {
+        return colour == 1 ? (7 - row) * 8 + col : row * 8 + col;
+    }
+
+    public static int row(int square, int colour) {
+        return colour == 1 ? 7 - Bitboards.rank(square) : Bitboards.rank(square);
+    }
+
+    public static int col(int square) {
+        return Bitboards.file(square);
+    }
+
+    /**
+     * Converts a player colour (1 for white, -1 for black) into a side index.
+     */
+    public static int side(int colour) {
+        return colour == 1 ? WHITE : BLACK;
+    }
+
+    public static int piece(int side, int type) {
+        return side * 6 + type;
+    }
+
+    public static int sideOf(int piece) {
+        return piece < 6 ? WHITE : BLACK;
+    }
+
+    public static int typeOf(int piece) {
+        return piece < 6 ? piece : piece - 6;
+    }
+
+    /**
+     * Removes every piece and resets the game counters.
+     */
+    public void clear() {
+        Arrays.fill(pieces, 0);
+        Arrays.fill(mailbox, (byte) NO_PIECE);
+        occupancy[WHITE] = 0;
+        occupancy[BLACK] = 0;
+        occupied = 0;
+        sideToMove = WHITE;
+        castlingRights = 0;
+        enPassantSquare = NO_SQUARE;
+        halfmoveClock = 0;
+        fullmoveNumber = 1;
+        hash = 0;
+        psqtScore = 0;
+        phase = 0;
+        ply = 0;
+    }
+
+    /**
+     * Sets up the standard starting position.
+     */
+    public void setStartPosition() {
+        clear();
+        int[] backRow = {ROOK, KNIGHT, BISHOP, QUEEN, KING, BISHOP, KNIGHT, ROOK};
+        for (int file = 0; file < 8; file++) {
+            putPiece(piece(WHITE, backRow[file]), file);
+            putPiece(piece(WHITE, PAWN), 8 + file);
+            putPiece(piece(BLACK, PAWN), 48 + file);
+            putPiece(piece(BLACK, backRow[file]), 56 + file);
+        }
+        castlingRights = WHITE_KINGSIDE | WHITE_QUEENSIDE | BLACK_KINGSIDE | BLACK_QUEENSIDE;
+        hash = computeHash();
+    }
+
+    /**
+     * Sets up the position described by a FEN string.
+     *
+     * @throws IllegalArgumentException if the string is not valid FEN
+     */
+    public void setFen(String fen) {
+        clear();
+        String[] fields = fen.trim().split("\\s+");
+        if (fields.length < 4) {
+            throw new IllegalArgumentException("Invalid FEN: " + fen);
+        }
+
+        int rank = 7;
+        int file = 0;
+        for (char c : fields[0].toCharArray()) {
+            if (c == '/') {
+                rank--;
+                file = 0;
+            } else if (Character.isDigit(c)) {
+                file += c - '0';
+            } else {
+                int type = PIECE_LETTERS.indexOf(Character.toLowerCase(c));
+                if (type < 0 || rank < 0 || file > 7) {
+                    throw new IllegalArgumentException("Invalid FEN: " + fen);
+                }
+                putPiece(piece(Character.isUpperCase(c) ? WHITE : BLACK, type), rank * 8 + file);
+                file++;
+            }
+        }
+
+        sideToMove = fields[1].equals("w") ? WHITE : BLACK;
+        for (char c : fields[2].toCharArray()) {
+            switch (c) {
+                case 'K' -> castlingRights |= WHITE_KINGSIDE;
+                case 'Q' -> castlingRights |= WHITE_QUEENSIDE;
+                case 'k' -> castlingRights |= BLACK_KINGSIDE;
+                case 'q' -> castlingRights |= BLACK_QUEENSIDE;
+            }
+        }
+        if (!fields[3].equals("-")) {
+            enPassantSquare = (fields[3].charAt(1) - '1') * 8 + fields[3].charAt(0) - 'a';
+        }
+        if (fields.length >= 6) {
+            halfmoveClock = Integer.parseInt(fields[4]);
+            fullmoveNumber = Integer.parseInt(fields[5]);
+        }
+        hash = computeHash();
+    }
+
+    /**
+     * Describes the position as a FEN string.
+     */
+    public String toFen() {
+        StringBuilder fen = new StringBuilder();
+        for (int rank = 7; rank >= 0; rank--) {
+            int empty = 0;
+            for (int file = 0; file < 8; file++) {
+                int piece = mailbox[rank * 8 + file];
+                if (piece == NO_PIECE) {
+                    empty++;
+                    continue;
+                }
+                if (empty > 0) {
+                    fen.append(empty);
+                    empty = 0;
+                }
+                char letter = PIECE_LETTERS.charAt(typeOf(piece));
+                fen.append(sideOf(piece) == WHITE ? Character.toUpperCase(letter) : letter);
+            }
+            if (empty > 0) {
+                fen.append(empty);
+            }
+            if (rank > 0) {
+                fen.append('/');
+            }
+        }
+
+        fen.append(sideToMove == WHITE ? " w " : " b ");
+        if (castlingRights == 0) {
+            fen.append('-');
+        } else {
+            if ((castlingRights & WHITE_KINGSIDE) != 0) fen.append('K');
+            if ((castlingRights & WHITE_QUEENSIDE) != 0) fen.append('Q');
+            if ((castlingRights & BLACK_KINGSIDE) != 0) fen.append('k');
+            if ((castlingRights & BLACK_QUEENSIDE) != 0) fen.append('q');
+        }
+        fen.append(' ').append(enPassantSquare == NO_SQUARE ? "-" : Move.squareName(enPassantSquare));
+        fen.append(' ').append(halfmoveClock).append(' ').append(fullmoveNumber);
+        return fen.toString();
+    }
+
+    /**
+     * Copies another position, including the moves that can be taken back, into this one.
+     * Only allocates if this position's undo stack is too short.
+     */
+    public void copyFrom(BoardState other) {
+        System.arraycopy(other.pieces, 0, pieces, 0, pieces.length);
+        System.arraycopy(other.mailbox, 0, mailbox, 0, mailbox.length);
+        occupancy[WHITE] = other.occupancy[WHITE];
+        occupancy[BLACK] = other.occupancy[BLACK];
+        occupied = other.occupied;
+        sideToMove = other.sideToMove;
+        castlingRights = other.castlingRights;
+        enPassantSquare = other.enPassantSquare;
+        halfmoveClock = other.halfmoveClock;
+        fullmoveNumber = other.fullmoveNumber;
+        hash = other.hash;
+        psqtScore = other.psqtScore;
+        phase = other.phase;
+        if (undoStack.length < other.undoStack.length) {
+            undoStack = new long[other.undoStack.length];
+            hashStack = new long[other.hashStack.length];
+        }
+        System.arraycopy(other.undoStack, 0, undoStack, 0, other.ply);
+        System.arraycopy(other.hashStack, 0, hashStack, 0, other.ply);
+        ply = other.ply;
+    }
+
+    public void putPiece(int piece, int square) {
+        long bit = Bitboards.bit(square);
+        pieces[piece] |= bit;
+        occupancy[sideOf(piece)] |= bit;
+        occupied |= bit;
+        mailbox[square] = (byte) piece;
+        hash ^= Zobrist.piece(piece, square);
+        psqtScore += Evaluator.square(piece, square);
+        phase += Evaluator.phase(piece);
+    }
+
+    /**
+     * Removes whatever stands on the square.
+     *
+     * @return the removed piece, or NO_PIECE if the square was empty
+     */
+    public int removePiece(int square) {
+        int piece = mailbox[square];
+        if (piece != NO_PIECE) {
+            long bit = Bitboards.bit(square);
+            pieces[piece] &= ~bit;
+            occupancy[sideOf(piece)] &= ~bit;
+            occupied &= ~bit;
+            mailbox[square] = (byte) NO_PIECE;
+            hash ^= Zobrist.piece(piece, square);
+            psqtScore -= Evaluator.square(piece, square);
+            phase -= Evaluator.phase(piece);
+        }
+        return piece;
+    }
+
+    private void movePiece(int from, int to) {
+        int piece = mailbox[from];
+        long fromTo = Bitboards.bit(from) | Bitboards.bit(to);
+        pieces[piece] ^= fromTo;
+        occupancy[sideOf(piece)] ^= fromTo;
+        occupied ^= fromTo;
+        mailbox[from] = (byte) NO_PIECE;
+        mailbox[to] = (byte) piece;
+        hash ^= Zobrist.piece(piece, from) ^ Zobrist.piece(piece, to);
+        psqtScore += Evaluator.square(piece, to) - Evaluator.square(piece, from);
+    }
+
+    /**
+     * Plays a packed move (see {@link Move}) for the side to move.
+     * It can be taken back with {@link #unmakeMove()}.
+     *
+     * @return the captured piece, or NO_PIECE
+     */
+    public int makeMove(int move) {
+        if (ply == undoStack.length) {
+            undoStack = Arrays.copyOf(undoStack, ply * 2);
+            hashStack = Arrays.copyOf(hashStack, ply * 2);
+        }
+        hashStack[ply] = hash;
+        hash ^= enPassantKey() ^ Zobrist.castling(castlingRights);
+        long undo = (move & 0xFFFFL) | (long) castlingRights << 20 | (long) (enPassantSquare + 1) << 24
+                | (long) Math.min(halfmoveClock, 0xFFFF) << 32;
+
+        int from = Move.from(move);
+        int to = Move.to(move);
+        int flags = Move.flags(move);
+        int type = typeOf(mailbox[from]);
+        int captured = NO_PIECE;
+
+        if (flags == Move.EN_PASSANT) {
+            captured = removePiece(sideToMove == WHITE ? to - 8 : to + 8);
+        } else if ((flags & Move.CAPTURE) != 0) {
+            captured = removePiece(to);
+        }
+        movePiece(from, to);
+
+        if ((flags & Move.PROMOTION) != 0) {
+            removePiece(to);
+            putPiece(piece(sideToMove, Move.promotion(move)), to);
+        } else if (flags == Move.KING_CASTLE) {
+            movePiece(to + 1, to - 1);
+        } else if (flags == Move.QUEEN_CASTLE) {
+            movePiece(to - 2, to + 1);
+        }
+
+        enPassantSquare = flags == Move.DOUBLE_PUSH ? (from + to) / 2 : NO_SQUARE;
+        castlingRights &= CASTLING_MASK[from] & CASTLING_MASK[to];
+        halfmoveClock = type == PAWN || captured != NO_PIECE ? 0 : halfmoveClock + 1;
+        if (sideToMove == BLACK) {
+            fullmoveNumber++;
+        }
+        sideToMove ^= 1;
+        hash ^= enPassantKey() ^ Zobrist.castling(castlingRights) ^ Zobrist.sideToMove();
+        undoStack[ply++] = undo | (long) (captured + 1) << 16;
+        return captured;
+    }
+
+    /**
+     * Takes back the last move played with {@link #makeMove(int)}.
+     */
+    public void unmakeMove() {
+        long undo = undoStack[--ply];
+        int move = (int) (undo & 0xFFFF);
+        int from = Move.from(move);
+        int to = Move.to(move);
+        int flags = Move.flags(move);
+
+        sideToMove ^= 1;
+        if (sideToMove == BLACK) {
+            fullmoveNumber--;
+        }
+
+        if ((flags & Move.PROMOTION) != 0) {
+            removePiece(to);
+            putPiece(piece(sideToMove, PAWN), to);
+        } else if (flags == Move.KING_CASTLE) {
+            movePiece(to - 1, to + 1);
+        } else if (flags == Move.QUEEN_CASTLE) {
+            movePiece(to + 1, to - 2);
+        }
+        movePiece(to, from);
+
+        int captured = (int) ((undo >>> 16) & 15) - 1;
+        if (captured != NO_PIECE) {
+            int capturedSquare = flags == Move.EN_PASSANT ? (sideToMove == WHITE ? to - 8 : to + 8) : to;
+            putPiece(captured, capturedSquare);
+        }
+        castlingRights = (int) ((undo >>> 20) & 15);
+        enPassantSquare = (int) ((undo >>> 24) & 127) - 1;
+        halfmoveClock = (int) ((undo >>> 32) & 0xFFFF);
+        hash = hashStack[ply];
+    }
+
+    /**
+     * The last move played, or Move.NONE if there is nothing to take back.
+     */
+    public int lastMove() {
+        return ply == 0 ? Move.NONE : (int) (undoStack[ply - 1] & 0xFFFF);
+    }
+
+    /**
+     * Zobrist key of the position: equal positions, with the same side to move, castling rights
+     * and en passant capture, have equal keys however they were reached.
+     */
+    public long hash() {
+        return hash;
+    }
+
+    /**
+     * Packed middlegame/endgame piece-square score of the pieces, from white's point of view (see {@link Evaluator}).
+     */
+    public int psqtScore() {
+        return psqtScore;
+    }
+
+    /**
+     * Sum of the phase weights of the pieces on the board.
+     */
+    public int phase() {
+        return phase;
+    }
+
+    /**
+     * Recomputes the Zobrist key from scratch.
+     */
+    public long computeHash() {
+        long key = 0;
+        for (int square = 0; square < 64; square++) {
+            if (mailbox[square] != NO_PIECE) {
+                key ^= Zobrist.piece(mailbox[square], square);
+            }
+        }
+        key ^= Zobrist.castling(castlingRights) ^ enPassantKey();
+        return sideToMove == BLACK ? key ^ Zobrist.sideToMove() : key;
+    }
+
+    // The en passant square only changes the position if a pawn of the side to move can capture there
+    private long enPassantKey() {
+        if (enPassantSquare != NO_SQUARE
+                && (Bitboards.pawnAttacks(sideToMove ^ 1, enPassantSquare) & pieces[piece(sideToMove, PAWN)]) != 0) {
+            return Zobrist.enPassant(enPassantSquare);
+        }
+        return 0;
+    }
+
+    /**
+     * Number of earlier positions in the game identical to the current one.
+     * Only positions since the last capture or pawn move are compared, as no earlier one can repeat.
+     */
+    public int repetitions() {
+        int count = 0;
+        int limit = Math.min(halfmoveClock, ply);
+        for (int i = 4; i <= limit; i += 2) {
+            if (hashStack[ply - i] == hash) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Number of moves that can be taken back.
+     */
+    public int ply() {
+        return ply;
+    }
+
+    public int pieceAt(int square) {
+        return mailbox[square];
+    }
+
+    public boolean isEmpty(int square) {
+        return (occupied & Bitboards.bit(square)) == 0;
+    }
+
+    public long pieces(int side, int type) {
+        return pieces[piece(side, type)];
+    }
+
+    public long occupancy(int side) {
+        return occupancy[side];
+    }
+
+    public long occupied() {
+        return occupied;
+    }
+
+    public int sideToMove() {
+        return sideToMove;
+    }
+
+    public int castlingRights() {
+        return castlingRights;
+    }
+
+    public int enPassantSquare() {
+        return enPassantSquare;
+    }
+
+    public int halfmoveClock() {
+        return halfmoveClock;
+    }
+
+    public int fullmoveNumber() {
+        return fullmoveNumber;
+    }
+
+    public int kingSquare(int side) {
+        return Bitboards.lsb(pieces[piece(side, KING)]);
+    }
+
+    /**
+     * All pieces of either side attacking the square, given an occupancy for the sliders.
+     */
+    public long attackersTo(int square, long occupied) {
+        long rooksQueens = pieces[piece(WHITE, ROOK)] | pieces[piece(BLACK, ROOK)]
+                | pieces[piece(WHITE, QUEEN)] | pieces[piece(BLACK, QUEEN)];
+        long bishopsQueens = pieces[piece(WHITE, BISHOP)] | pieces[piece(BLACK, BISHOP)]
+                | pieces[piece(WHITE, QUEEN)] | pieces[piece(BLACK, QUEEN)];
+        return (Bitboards.pawnAttacks(BLACK, square) & pieces[piece(WHITE, PAWN)])
+                | (Bitboards.pawnAttacks(WHITE, square) & pieces[piece(BLACK, PAWN)])
+                | (Bitboards.knightAttacks(square) & (pieces[piece(WHITE, KNIGHT)] | pieces[piece(BLACK, KNIGHT)]))
+                | (Bitboards.kingAttacks(square) & (pieces[piece(WHITE, KING)] | pieces[piece(BLACK, KING)]))
+                | (Bitboards.rookAttacks(square, occupied) & rooksQueens)
+                | (Bitboards.bishopAttacks(square, occupied) & bishopsQueens);
+    }
+
+    public boolean isAttacked(int square, int bySide) {
+        return (attackersTo(square, occupied) & occupancy[bySide]) != 0;
+    }
+
+    public boolean inCheck() {
+        return isAttacked(kingSquare(sideToMove), sideToMove ^ 1);
+    }
+}
@@ -1,77 +1,42 @@
-import javax.swing.*;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
- * Main class representing the chess game logic, handling board state and player interactions.
+ * The state of one game as a player sees it: the board, the position behind it and whose turn it is.
+ * <p>
+ * The game knows nothing of windows, sounds or sockets. It reports what happens to its
+ * GameListeners, and the GUI, the sounds and the network client subscribe to it, so any number of
+ * games can run in one JVM without loading AWT. ChessGameLauncher puts the desktop game together.
+ * <p>
+ * A game is not thread-safe: it belongs to one thread, which makes every call on it. The desktop
+ * game belongs to the event dispatch thread, and ChessGameClient hands the server's messages to the
+ * owner of its game instead of applying them on its network thread.
  */
 public class ChessGame {
     private ChessPlayer player;
     private ChessPlayer opponent;
     private Chess[][] board;
+    private final BoardState state = new BoardState();
+    private final MoveList legalMoves = new MoveList();
+    private int promotionFrom = BoardState.NO_SQUARE; // pawn waiting for its promotion piece
+    private int[] promotionMove; // the move of that pawn, reported once the piece is known
+    private boolean promotionCapture;
     public static final int BOARD_SIZE = 8;
-    private ChessGameClient client;
-    private ChessGameGUI gui;
-    public int currentPlayer = 1; // 1 for white, -1 for black
+    private int currentPlayer = 1; // 1 for white, -1 for black
     private int colour; // Player's color
     private int[] myLastMove;
     private int[] opponentLastMove;
-    private ArrayList<Chess> graveyard;
+    private final ArrayList<Chess> graveyard = new ArrayList<>();
+    private final List<GameListener> listeners = new CopyOnWriteArrayList<>();
 
-    /**
-     * Constructor initializes the game and manages the server/client setup.
-     */
-    public ChessGame() throws IOException {
-        graveyard = new ArrayList<>();
-        promptForNetworkSetup();
-    }
-
-    /**
-     * Prompts user to host or join a game and sets up networking.
-     */
-    private void promptForNetworkSetup() throws IOException {
-        int choice = JOptionPane.showConfirmDialog(
-                null,
-                "Do you want to host the game?",
-                "Host or Join",
-                JOptionPane.YES_NO_OPTION
-        );
-
-        if (choice == JOptionPane.YES_OPTION) {
-            setupAsHost();
-        } else {
-            setupAsClient();
-        }
-    }
-
-    /**
-     * Sets up the game as host (server).
-     */
-    private void setupAsHost() throws IOException {
-        String portInput = JOptionPane.showInputDialog(null, "Enter the port to host the game:", "2396");
-        int port = Integer.parseInt(portInput);
-        
-        // Start the server in a new thread
-        new Thread(() -> {
-            try {
-                new ChessGameServer().start(port);
-            } catch (IOException e) {
-                throw new RuntimeException(e);
-            }
-        }).start();
-
-        // Initialize the client to connect to localhost
-        client = new ChessGameClient(this, "localhost", port);
+    public void addListener(GameListener listener) {
+        listeners.add(listener);
     }
 
-    /**
-     * Sets up the game as client (connecting to a server).
-     */
-    private void setupAsClient() throws IOException {
-        String serverAddress = JOptionPane.showInputDialog(null, "Input the server IP address", "localhost");
-        String portInput = JOptionPane.showInputDialog(null, "Enter the port of the game:", "2396");
-        int port = Integer.parseInt(portInput);
-        client = new ChessGameClient(this, serverAddress, port);
+    public void removeListener(GameListener listener) {
+        listeners.remove(listener);
     }
 
     /**
@@ -83,8 +48,8 @@ public class ChessGame {
         
         // Place pawns
         for (int i = 0; i < BOARD_SIZE; i++) {
-            board[1][i] = new Pawn(-colour, opponent.getSide(), this);
-            board[6][i] = new Pawn(colour, player.getSide(), this);
+            board[1][i] = new Pawn(-colour);
+            board[6][i] = new Pawn(colour);
         }
 
         // Place back row pieces for opponent
@@ -102,6 +67,7 @@ public class ChessGame {
             new Bishop(colour), new Knight(colour), new Rook(colour)
         };
         System.arraycopy(frontRow, 0, board[7], 0, BOARD_SIZE);
+        state.setStartPosition();
     }
 
     public int[] getLastMove(boolean mine) {
@@ -116,6 +82,13 @@ public class ChessGame {
         }
     }
 
+    /**
+     * The colour whose turn it is: 1 for white, -1 for black.
+     */
+    public int getCurrentPlayer() {
+        return currentPlayer;
+    }
+
     public ChessPlayer getPlayer() {
         return player;
     }
@@ -128,54 +101,210 @@ public class ChessGame {
         return board;
     }
 
+    public BoardState getBoardState() {
+        return state;
+    }
+
+    /**
+     * Converts a row/column of this player's view of the board into a BoardState square.
+     */
+    public int toSquare(int row, int col) {
+        return BoardState.square(row, col, colour);
+    }
+
     /**
      * Handles the logic for making a move on the board.
      * 
-     * @return true if the move was completed, false if promotion is needed
+     * A move that is not legal in the position is rejected: the board, the turn and the listeners
+     * are left untouched, so nothing is sent for it.
+     *
+     * @return true if the move was completed, false if promotion is needed or the move was rejected
      */
     public boolean makeMove(int playerID, int selectedRow, int selectedCol, int row, int col) {
-        // Get the piece being moved
-        Chess movingPiece;
-        if (playerID == player.getColour()) {
-            movingPiece = gui.getFloatingPiece();
-        } else {
-            movingPiece = board[selectedRow][selectedCol];
-            board[selectedRow][selectedCol] = null;
+        int from = toSquare(selectedRow, selectedCol);
+        MoveGenerator.generateLegal(state, legalMoves);
+        int move = MoveGenerator.findMove(legalMoves, from, toSquare(row, col), BoardState.QUEEN);
+        if (move == Move.NONE) {
+            Log.warn("Move is not legal in the current position: {} to {}", Move.squareName(from), Move.squareName(toSquare(row, col)));
+            return false;
         }
+
+        // Get the piece being moved
+        Chess movingPiece = board[selectedRow][selectedCol];
+        board[selectedRow][selectedCol] = null;
         
         // Switch current player
         currentPlayer *= -1;
+        int[] played = {selectedRow, selectedCol, row, col};
+        setLastMove(playerID == colour, played);
         
-        // Handle capture and play appropriate sound
-        if (board[row][col] == null) {
-            SoundPlayer.playSound("/Move.wav");
-        } else {
-            SoundPlayer.playSound("/Capture.wav");
-            if (board[row][col].colour == playerID * -1) {
-                graveyard.add(board[row][col]);
+        // Handle capture
+        Chess captured = null;
+        if (Move.flags(move) == Move.EN_PASSANT) {
+            // The captured pawn stands beside the starting square
+            captured = board[selectedRow][col];
+            board[selectedRow][col] = null;
+        } else if (board[row][col] != null && board[row][col].colour == playerID * -1) {
+            captured = board[row][col];
+        }
+        if (captured != null) {
+            graveyard.add(captured);
+            for (GameListener listener : listeners) {
+                listener.pieceCaptured(captured);
             }
         }
         
         // Check for special moves
-        if (board[row][col] != null && board[row][col].type == 'K') {
-            // Checkmate condition
+        if (Move.isPromotion(move)) {
+            // Pawn promotion, completed in the position once the new piece is known
+            promotionFrom = from;
+            promotionMove = played;
+            promotionCapture = captured != null;
+            if (movingPiece.colour == colour) {
+                for (GameListener listener : listeners) {
+                    listener.promotionNeeded(row, col, movingPiece.colour);
+                }
+                return false;
+            }
             board[row][col] = movingPiece;
-            client.sendCheckMate();
-        } else if (movingPiece.colour == colour && movingPiece.type == 'P' && (row == 0 || row == board.length - 1)) {
-            // Pawn promotion
-            gui.promotion(row, col, movingPiece.colour);
-            return false;
-        } else if (board[row][col] != null && movingPiece.type == 'K' && movingPiece.colour == board[row][col].colour) {
+            return true;
+        } else if (Move.isCastle(move)) {
             // Castling move
             handleCastling(selectedRow, selectedCol, row, col, movingPiece);
         } else {
             // Standard move
             board[row][col] = movingPiece;
         }
-        
+
+        state.makeMove(move);
+        for (GameListener listener : listeners) {
+            listener.moveApplied(playerID, played, captured != null);
+        }
+        return true;
+    }
+
+    /**
+     * Checks whether the piece on the first tile may legally be dropped on the second.
+     */
+    public boolean isLegalMove(int selectedRow, int selectedCol, int row, int col) {
+        MoveGenerator.generateLegal(state, legalMoves);
+        return MoveGenerator.findMove(legalMoves, toSquare(selectedRow, selectedCol), toSquare(row, col), BoardState.QUEEN) != Move.NONE;
+    }
+
+    /**
+     * Replaces a pawn that reached the last rank with the piece it promotes to. A promotion that is
+     * not legal in the position takes the pawn's move back out of the view instead, and nothing is sent.
+     */
+    public void promote(int row, int col, Chess piece, int pieceType) {
+        board[row][col] = piece;
+        if (promotionFrom == BoardState.NO_SQUARE) {
+            positionChanged();
+            return;
+        }
+        int playerID = state.sideToMove() == BoardState.WHITE ? 1 : -1; // The pawn's move is not made yet
+        MoveGenerator.generateLegal(state, legalMoves);
+        int move = MoveGenerator.findMove(legalMoves, promotionFrom, toSquare(row, col), pieceType);
+        int from = promotionFrom;
+        promotionFrom = BoardState.NO_SQUARE;
+        if (move == Move.NONE) {
+            Log.warn("Promotion of the pawn on {} to piece {} is not legal in the current position", Move.squareName(from), pieceType);
+            if (promotionCapture && !graveyard.isEmpty()) {
+                graveyard.remove(graveyard.size() - 1);
+            }
+            currentPlayer = state.sideToMove() == BoardState.WHITE ? 1 : -1;
+            myLastMove = null;
+            opponentLastMove = null;
+            syncBoard();
+            positionChanged();
+            return;
+        }
+        state.makeMove(move);
+        for (GameListener listener : listeners) {
+            listener.moveApplied(playerID, promotionMove, promotionCapture);
+            listener.piecePromoted(playerID, row, col, pieceType);
+        }
+    }
+
+    /**
+     * Takes back the last move played by either side and rebuilds the board from the position.
+     *
+     * @param playerID the player who asked for it
+     * @return false if there is no move to take back
+     */
+    public boolean takeBack(int playerID) {
+        if (state.ply() == 0 || promotionFrom != BoardState.NO_SQUARE) {
+            return false;
+        }
+        if (Move.isCapture(state.lastMove()) && !graveyard.isEmpty()) {
+            graveyard.remove(graveyard.size() - 1);
+        }
+        state.unmakeMove();
+        currentPlayer *= -1;
+        myLastMove = null;
+        opponentLastMove = null;
+        syncBoard();
+        for (GameListener listener : listeners) {
+            listener.moveTakenBack(playerID);
+        }
         return true;
     }
 
+    /**
+     * Replaces the position with the one the server sent after a reconnect. Moves played before it
+     * can no longer be taken back.
+     */
+    public void resync(String fen) {
+        state.setFen(fen);
+        promotionFrom = BoardState.NO_SQUARE;
+        currentPlayer = state.sideToMove() == BoardState.WHITE ? 1 : -1;
+        myLastMove = null;
+        opponentLastMove = null;
+        syncBoard();
+        positionChanged();
+    }
+
+    private void positionChanged() {
+        for (GameListener listener : listeners) {
+            listener.positionChanged();
+        }
+    }
+
+    /**
+     * Recreates the pieces of the board view from the position.
+     */
+    private void syncBoard() {
+        for (int row = 0; row < BOARD_SIZE; row++) {
+            for (int col = 0; col < BOARD_SIZE; col++) {
+                int piece = state.pieceAt(toSquare(row, col));
+                board[row][col] = piece == BoardState.NO_PIECE ? null
+                        : createPiece(BoardState.typeOf(piece), BoardState.sideOf(piece) == BoardState.WHITE ? 1 : -1);
+            }
+        }
+    }
+
+    /**
+     * Creates a piece from its BoardState type.
+     */
+    private Chess createPiece(int type, int pieceColour) {
+        return switch (type) {
+            case BoardState.PAWN -> new Pawn(pieceColour);
+            case BoardState.KNIGHT -> new Knight(pieceColour);
+            case BoardState.BISHOP -> new Bishop(pieceColour);
+            case BoardState.ROOK -> new Rook(pieceColour);
+            case BoardState.QUEEN -> new Queen(pieceColour);
+            default -> new King(pieceColour);
+        };
+    }
+
+    /**
+     * Removes a piece from the board.
+     */
+    public void removePiece(int row, int col) {
+        board[row][col] = null;
+        state.removePiece(toSquare(row, col));
+        positionChanged();
+    }
+
     /**
      * Handles the special castling move between king and rook.
      */
@@ -202,22 +331,54 @@ public class ChessGame {
         setPlayer(playerID);
         opponent = new ChessPlayer(-player.getColour(), -1);
         initializeBoard();
-        gui = new ChessGameGUI(this);
+        for (GameListener listener : listeners) {
+            listener.gameStarted(playerID);
+        }
     }
 
     public static void main(String[] args) throws IOException {
-        new ChessGame();
+        ChessGameLauncher.main(args); // The desktop game, still started as ChessGame
     }
 
-    public ChessGameGUI getGUI() {
-        return gui;
+    public List<Chess> getGraveyard() {
+        return graveyard;
     }
 
-    public ChessGameClient getClient() {
-        return client;
+    /**
+     * Ends the game; the winner is 0 for a draw.
+     */
+    public void endGame(int winner) {
+        for (GameListener listener : listeners) {
+            listener.gameOver(winner);
+        }
+    }
+
+    public void opponentLeft() {
+        for (GameListener listener : listeners) {
+            listener.opponentLeft();
+        }
     }
 
+    public void connectionLost() {
+        for (GameListener listener : listeners) {
+            listener.connectionLost();
+        }
+    }
+
+    /**
+     * Clears the finished game so the player can look for a new opponent.
+     * The board of the old game stays on screen until the next one starts.
+     */
     public void reset() {
-        // To be implemented for game restart
+        state.setStartPosition();
+        legalMoves.clear();
+        graveyard.clear();
+        promotionFrom = BoardState.NO_SQUARE;
+        currentPlayer = 1;
+        myLastMove = null;
+        opponentLastMove = null;
+        for (GameListener listener : listeners) {
+            listener.gameReset();
+        }
     }
 }
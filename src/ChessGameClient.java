@@ -1,29 +1,46 @@
-import javax.swing.*;
 import java.io.*;
 import java.net.*;
+import java.util.concurrent.Executor;
 
 /**
  * Handles network communication between chess clients.
+ * Messages from the server are applied to the ChessGame on the thread that owns it, and the local
+ * player's moves are sent when the game reports them to this client, one of its listeners.
+ * If the connection drops, the client connects again and sends RECONNECT with the session token of its
+ * game; the server answers with a SNAPSHOT of the position, which replaces the local board.
  */
-public class ChessGameClient {
+public class ChessGameClient implements GameListener {
+    private static final int RATING = Integer.getInteger("chess.rating", Matchmaker.DEFAULT_RATING);
+    private static final int RECONNECT_ATTEMPTS = 5;
+    private static final long RECONNECT_DELAY_MILLIS = 1000; // grows with each attempt
+
     private final String serverAddress;
     private final int serverPort;
-    private int playerID;
-    private ObjectOutputStream outputStream;
-    private ObjectInputStream inputStream;
+    private volatile int playerID;
+    private volatile OutputStream outputStream;
+    private DataInputStream inputStream;
     private final ChessGame game;
-    private Socket socket;
-    private boolean connected = false;
+    private final Executor gameThread; // runs tasks on the thread that owns the game
+    private volatile Socket socket;
+    private volatile boolean connected = false;
+    private volatile boolean closed = false; // set when the player leaves on purpose
+    private volatile long sessionToken = 0; // from the server while a game is in progress
+    private volatile boolean joining = false; // waiting for the server to find an opponent
 
     /**
      * Creates a client connection to the chess server.
+     *
+     * @param gameThread runs tasks on the thread that owns the game, such as {@code SwingUtilities::invokeLater}
      */
-    public ChessGameClient(ChessGame game, String serverAddress, int serverPort) throws IOException {
+    public ChessGameClient(ChessGame game, Executor gameThread, String serverAddress, int serverPort) throws IOException {
         this.game = game;
+        this.gameThread = gameThread;
         this.serverAddress = serverAddress;
         this.serverPort = serverPort;
+        game.addListener(this);
         connect();
         startMessageListener();
+        sendJoin();
     }
 
     /**
@@ -32,35 +49,38 @@ public class ChessGameClient {
     private void connect() throws IOException {
         try {
             socket = new Socket(serverAddress, serverPort);
-            outputStream = new ObjectOutputStream(socket.getOutputStream());
-            inputStream = new ObjectInputStream(socket.getInputStream());
+            socket.setTcpNoDelay(true); // Frames are a few bytes each and should leave at once
+            outputStream = socket.getOutputStream();
+            inputStream = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
             connected = true;
-            System.out.println("Connected to the server.");
+            Log.info("Connected to the server.");
         } catch (IOException e) {
-            System.err.println("Failed to connect to server: " + e.getMessage());
+            Log.error("Failed to connect to server: {}", e.getMessage());
             throw e;
         }
     }
 
     /**
-     * Starts a background thread to listen for incoming messages.
+     * Starts a background thread to listen for incoming messages. It keeps the program running while
+     * the player waits for an opponent, before any window is open.
      */
     private void startMessageListener() {
-        new Thread(this::listenForMessages).start();
+        Threads.startKeepAlive("chess-client-listener", this::listenForMessages);
     }
 
     /**
      * Closes all connections safely.
      */
     private void disconnect() {
+        closed = true;
         connected = false;
         try {
             if (outputStream != null) outputStream.close();
             if (inputStream != null) inputStream.close();
             if (socket != null) socket.close();
-            System.out.println("Disconnected from server.");
+            Log.info("Disconnected from server.");
         } catch (IOException e) {
-            System.err.println("Error during disconnect: " + e.getMessage());
+            Log.warn("Error during disconnect: {}", e.getMessage());
         }
     }
 
@@ -68,17 +88,63 @@ public class ChessGameClient {
      * Background thread that continuously listens for messages.
      */
     private void listenForMessages() {
-        try {
-            while (connected) {
-                ChessMessage message = (ChessMessage) inputStream.readObject();
-                processMessage(message);
+        while (!closed) {
+            try {
+                while (!closed) { // A dropped socket makes the read fail
+                    ChessMessage message = ChessMessageCodec.read(inputStream);
+                    gameThread.execute(() -> processMessage(message));
+                }
+            } catch (IOException e) {
+                if (closed) {  // Only handle as error if we didn't intentionally disconnect
+                    return;
+                }
+                Log.warn("Error in message listener: {}", e.getMessage());
+                if (!reconnect()) {
+                    handleDisconnection();
+                    return;
+                }
             }
-        } catch (IOException | ClassNotFoundException e) {
-            if (connected) {  // Only handle as error if we didn't intentionally disconnect
-                System.err.println("Error in message listener: " + e.getMessage());
-                handleDisconnection();
+        }
+    }
+
+    /**
+     * Connects again after the connection dropped and asks for the seat of the current game back.
+     *
+     * @return false if the server could not be reached
+     */
+    private boolean reconnect() {
+        dropConnection();
+        for (int attempt = 1; attempt <= RECONNECT_ATTEMPTS; attempt++) {
+            try {
+                Thread.sleep(attempt * RECONNECT_DELAY_MILLIS);
+                connect();
+                if (sessionToken != 0) {
+                    ChessMessageCodec.write(outputStream, new ChessMessage(ChessMessage.RECONNECT, playerID, sessionToken));
+                } else if (joining) {
+                    sendJoin();
+                }
+                return true;
+            } catch (IOException e) {
+                Log.warn("Reconnect attempt {} failed: {}", attempt, e.getMessage());
+                dropConnection();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
             }
         }
+        return false;
+    }
+
+    /**
+     * Closes a broken socket; the listener notices and connects again.
+     */
+    private void dropConnection() {
+        connected = false;
+        try {
+            if (socket != null) socket.close();
+        } catch (IOException e) {
+            Log.warn("Error closing the connection: {}", e.getMessage());
+        }
     }
 
     /**
@@ -86,27 +152,27 @@ public class ChessGameClient {
      */
     private void handleDisconnection() {
         disconnect();
-        SwingUtilities.invokeLater(() -> {
-            JOptionPane.showMessageDialog(null,
-                    "Lost connection to the server. Please restart the game.",
-                    "Connection Lost",
-                    JOptionPane.ERROR_MESSAGE);
-            System.exit(0);
-        });
+        gameThread.execute(game::connectionLost);
     }
 
     /**
-     * Processes incoming messages and updates the game state.
+     * Processes incoming messages and updates the game state, on the thread that owns the game.
      */
     private void processMessage(ChessMessage message) {
-        System.out.println("Message received: " + message.type() + " from player " + message.playerID());
+        Log.debug("Message received: {}", message);
 
         switch (message.type()) {
             case ChessMessage.START -> handleStartMessage(message);
             case ChessMessage.MOVE -> handleMoveMessage(message);
             case ChessMessage.CHECKMATE -> handleCheckmateMessage(message);
-            case ChessMessage.QUIT -> handleOpponentDisconnection();
+            case ChessMessage.QUIT -> {
+                sessionToken = 0;
+                game.opponentLeft();
+            }
             case ChessMessage.PLACE -> handlePlacePieceMessage(message);
+            case ChessMessage.RETURN -> handleReturnMessage();
+            case ChessMessage.SESSION -> sessionToken = (long) message.data();
+            case ChessMessage.SNAPSHOT -> handleSnapshotMessage(message);
         }
     }
 
@@ -114,8 +180,9 @@ public class ChessGameClient {
      * Handles the START message, which assigns player ID.
      */
     private void handleStartMessage(ChessMessage message) {
+        joining = false;
         playerID = (int) message.data();
-        System.out.println("Game started. You are " + (playerID == 1 ? "White" : "Black"));
+        Log.info("Game started. You are {}", playerID == 1 ? "White" : "Black");
         game.start(playerID);
     }
 
@@ -133,14 +200,22 @@ public class ChessGameClient {
             ChessGame.BOARD_SIZE - move[2] - 1,
             move[3]
         );
-        game.getGUI().repaint();
     }
 
     /**
      * Handles a CHECKMATE message.
      */
     private void handleCheckmateMessage(ChessMessage message) {
-        game.getGUI().checkmate((int) message.data());
+        sessionToken = 0;
+        game.endGame((int) message.data());
+    }
+
+    /**
+     * Replaces the board with the server's position after reconnecting or a rejected message.
+     */
+    private void handleSnapshotMessage(ChessMessage message) {
+        Log.info("Resynchronised with the server");
+        game.resync((String) message.data());
     }
 
     /**
@@ -157,12 +232,18 @@ public class ChessGameClient {
         
         // Check if placing (1) or removing (0) a piece
         if (moveData[0] == 1) {
-            game.getBoard()[ChessGame.BOARD_SIZE - row - 1][col] = piece;
+            game.promote(ChessGame.BOARD_SIZE - row - 1, col, piece, pieceType);
         } else {
-            game.getBoard()[row][col] = null;
+            game.removePiece(row, col);
         }
-        
-        game.getGUI().repaint();
+    }
+
+    /**
+     * Handles the opponent taking back their last move. The server answers a rejected message with a
+     * SNAPSHOT, never with RETURN.
+     */
+    private void handleReturnMessage() {
+        game.takeBack(-playerID);
     }
 
     /**
@@ -178,27 +259,18 @@ public class ChessGameClient {
     }
 
     /**
-     * Handles the opponent disconnecting from the game.
+     * Asks the server for an opponent. The game starts when the server sends START.
      */
-    private void handleOpponentDisconnection() {
-        SwingUtilities.invokeLater(() -> {
-            int option = JOptionPane.showOptionDialog(null,
-                    "Your opponent has disconnected. Would you like to wait for a new opponent?",
-                    "Opponent Disconnected",
-                    JOptionPane.YES_NO_OPTION,
-                    JOptionPane.QUESTION_MESSAGE,
-                    null,
-                    new String[]{"Wait for new opponent", "Exit game"},
-                    "Wait for new opponent");
-
-            if (option == JOptionPane.NO_OPTION) {
-                disconnect();
-                System.exit(0);
-            } else {
-                // Reset the game board and wait for new opponent
-                game.reset();
+    public void sendJoin() {
+        joining = true;
+        try {
+            if (connected) {
+                ChessMessageCodec.write(outputStream, new ChessMessage(ChessMessage.JOIN, 0, RATING));
             }
-        });
+        } catch (IOException e) {
+            Log.warn("Error joining a game: {}", e.getMessage());
+            dropConnection();
+        }
     }
 
     /**
@@ -207,25 +279,51 @@ public class ChessGameClient {
     public void sendMove(int type, int[] move) {
         try {
             if (connected) {
-                outputStream.writeObject(new ChessMessage(type, playerID, move));
+                ChessMessageCodec.write(outputStream, new ChessMessage(type, playerID, move));
             }
         } catch (IOException e) {
-            System.err.println("Error sending move: " + e.getMessage());
-            handleDisconnection();
+            Log.warn("Error sending move: {}", e.getMessage());
+            dropConnection(); // The snapshot sent after reconnecting undoes the lost move
         }
     }
 
     /**
-     * Sends a checkmate notification.
+     * Tells the opponent that this player took back their last move.
      */
-    public void sendCheckMate() {
+    public void sendTakeBack() {
         try {
             if (connected) {
-                outputStream.writeObject(new ChessMessage(ChessMessage.CHECKMATE, 0, playerID));
+                ChessMessageCodec.write(outputStream, new ChessMessage(ChessMessage.RETURN, playerID, null));
             }
         } catch (IOException e) {
-            System.err.println("Error sending checkmate: " + e.getMessage());
-            handleDisconnection();
+            Log.warn("Error sending take back: {}", e.getMessage());
+            dropConnection();
         }
     }
+
+    @Override
+    public void moveApplied(int playerID, int[] move, boolean capture) {
+        if (playerID == this.playerID) {
+            sendMove(ChessMessage.MOVE, move);
+        }
+    }
+
+    @Override
+    public void piecePromoted(int playerID, int row, int col, int pieceType) {
+        if (playerID == this.playerID) {
+            sendMove(ChessMessage.PLACE, new int[] {1, pieceType, row, col});
+        }
+    }
+
+    @Override
+    public void moveTakenBack(int playerID) {
+        if (playerID == this.playerID) {
+            sendTakeBack();
+        }
+    }
+
+    @Override
+    public void gameReset() {
+        sendJoin();
+    }
 }
@@ -1,15 +1,24 @@
 import javax.swing.*;
 import java.awt.*;
+import java.awt.event.ActionEvent;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseMotionAdapter;
+import java.awt.image.BufferedImage;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Objects;
 
 /**
  * GUI class for the chess game, handling rendering and user interactions.
+ * <p>
+ * The board is composed from three off-screen layers: the background and board, the highlights of
+ * the last moves, and the pieces. After a move only the squares that changed are redrawn in the
+ * layers and repainted, and dragging a piece repaints only the area it leaves and enters.
+ * <p>
+ * The window listens to its ChessGame, and shows the game's events on the event dispatch thread.
  */
-public class ChessGameGUI extends JPanel {
+public class ChessGameGUI extends JPanel implements GameListener {
     // Constants
     private static final int BOARD_SIZE = 8; // 8x8 chessboard
     
@@ -29,9 +38,18 @@ public class ChessGameGUI extends JPanel {
     private int cursorX = 0, cursorY = 0; // Cursor position for floating piece
     
     // Visual elements
-    private final Image backgroundImage;
-    private Image preMoveImage;
-    private Image lastMoveImage;
+    private static final String BOARD_SPRITE = "board";
+    private static final String LAST_MOVE_SPRITE = "lastMove"; // the opponent's last move
+    private static final String PREMOVE_SPRITE = "premove"; // this player's last move
+    private final SpriteCache sprites = new SpriteCache(); // images scaled to the current tile size
+
+    // Layers, redrawn only where they changed
+    private BufferedImage boardLayer; // background and board, the size of the panel
+    private BufferedImage overlayLayer; // move highlights, the size of the board
+    private BufferedImage pieceLayer; // pieces, the size of the board
+    private GraphicsConfiguration layerConfiguration;
+    private final Chess[][] drawnPieces = new Chess[BOARD_SIZE][BOARD_SIZE]; // what the piece layer shows
+    private final String[][] drawnHighlights = new String[BOARD_SIZE][BOARD_SIZE]; // what the overlay layer shows
     
     // Game references
     private final int playerColour;
@@ -47,10 +65,12 @@ public class ChessGameGUI extends JPanel {
         
         // Load images and resources
         loadImages();
-        backgroundImage = loadBoardImage();
+        sprites.put(BOARD_SPRITE, loadBoardImage(), Transparency.OPAQUE);
         
         setupMouseListeners();
+        setupKeyBindings();
         setupGameWindow();
+        game.addListener(this);
     }
 
     /**
@@ -69,11 +89,12 @@ public class ChessGameGUI extends JPanel {
         String[] pieces = {"wP", "wR", "wN", "wB", "wQ", "wK", "bP", "bR", "bN", "bB", "bQ", "bK"};
         for (String piece : pieces) {
             pieceImages.put(piece, new ImageIcon(getClass().getResource("/pieces/" + piece + ".png")).getImage());
+            sprites.put(piece, pieceImages.get(piece));
         }
         
         // Load UI element images
-        preMoveImage = new ImageIcon(getClass().getResource("/preMove.png")).getImage();
-        lastMoveImage = new ImageIcon(getClass().getResource("/lastMove.png")).getImage();
+        sprites.put(PREMOVE_SPRITE, new ImageIcon(getClass().getResource("/premove.png")).getImage());
+        sprites.put(LAST_MOVE_SPRITE, new ImageIcon(getClass().getResource("/lastMove.png")).getImage());
     }
 
     /**
@@ -98,14 +119,32 @@ public class ChessGameGUI extends JPanel {
             @Override
             public void mouseDragged(MouseEvent e) {
                 if (pieceSelected) {
+                    repaint(getFloatingBounds());
                     cursorX = e.getX();
                     cursorY = e.getY();
-                    repaint();
+                    repaint(getFloatingBounds());
                 }
             }
         });
     }
 
+    /**
+     * Sets up Ctrl+Z / Backspace to take back the player's own last move while the opponent is to move.
+     */
+    private void setupKeyBindings() {
+        Action takeBack = new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                if (!pieceSelected && game.getCurrentPlayer() != playerColour) {
+                    game.takeBack(playerColour);
+                }
+            }
+        };
+        getInputMap(WHEN_IN_FOCUSED_WINDOW).put(KeyStroke.getKeyStroke("control Z"), "takeBack");
+        getInputMap(WHEN_IN_FOCUSED_WINDOW).put(KeyStroke.getKeyStroke("BACK_SPACE"), "takeBack");
+        getActionMap().put("takeBack", takeBack);
+    }
+
     /**
      * Handles mouse press events for picking up pieces.
      */
@@ -115,7 +154,7 @@ public class ChessGameGUI extends JPanel {
 
         // Check if valid selection
         if (!isValidTile(row, col) || board[row][col] == null || 
-            game.currentPlayer != playerColour || 
+            game.getCurrentPlayer() != playerColour || 
             board[row][col].colour != playerColour) {
             return; // Ignore invalid clicks
         }
@@ -127,6 +166,10 @@ public class ChessGameGUI extends JPanel {
         floatingPiece = board[row][col];
         board[row][col] = null; // Temporarily remove piece from board
         pieceSelected = true;
+        cursorX = e.getX();
+        cursorY = e.getY();
+        refresh();
+        repaint(getFloatingBounds());
     }
 
     /**
@@ -140,24 +183,24 @@ public class ChessGameGUI extends JPanel {
         
         // Try to place the piece on the new tile
         if (isValidTile(row, col) && 
-            floatingPiece.checkMove(new int[] {selectedRow, selectedCol, row, col}, board) && 
+            game.isLegalMove(selectedRow, selectedCol, row, col) && 
             (selectedRow != row || selectedCol != col)) {
             
-            // Make move and send to opponent
-            if (game.makeMove(playerColour, selectedRow, selectedCol, row, col)) {
-                game.getClient().sendMove(ChessMessage.MOVE, new int[] {selectedRow, selectedCol, row, col});
-            }
+            // Make the move; the game tells the network client and the sounds
+            board[selectedRow][selectedCol] = floatingPiece;
+            game.makeMove(playerColour, selectedRow, selectedCol, row, col);
         } else {
             // Invalid move - return piece to original position
             board[selectedRow][selectedCol] = floatingPiece;
         }
         
         // Reset temporary variables
+        repaint(getFloatingBounds());
         floatingPiece = null;
         pieceSelected = false;
         selectedRow = -1;
         selectedCol = -1;
-        repaint();
+        refresh();
     }
 
     /**
@@ -178,47 +221,141 @@ public class ChessGameGUI extends JPanel {
 
     @Override
     protected void paintComponent(Graphics g) {
-        super.paintComponent(g);
+        // The board layer covers the whole panel, so there is no background to clear first
         adjustDimensions();
+        if (tileSize == 0) {
+            return;
+        }
+        if (boardLayer == null || boardLayer.getWidth() != getWidth() || boardLayer.getHeight() != getHeight()
+                || layerConfiguration != getGraphicsConfiguration()) {
+            createLayers();
+        }
+        updateLayers(); // Changes made without refresh()
 
-        // Fill background
-        g.setColor(Color.DARK_GRAY);
-        g.fillRect(0, 0, getWidth(), getHeight());
-
-        // Draw board
-        g.drawImage(backgroundImage, horizontalMargin, verticalMargin, getSquareSize(), getSquareSize(), this);
-        
-        // Draw pieces
-        drawPieces(g);
+        // Only the clip, the area that needs repainting, is copied from each layer
+        g.drawImage(boardLayer, 0, 0, this);
+        g.drawImage(overlayLayer, horizontalMargin, verticalMargin, this);
+        g.drawImage(pieceLayer, horizontalMargin, verticalMargin, this);
 
         // Draw floating piece if dragging
         if (floatingPiece != null) {
-            Image img = pieceImages.get(floatingPiece.getName());
+            Image img = sprite(floatingPiece.getName(), tileSize);
             if (img != null) {
-                g.drawImage(img, cursorX - tileSize / 2, cursorY - tileSize / 2, tileSize, tileSize, this);
+                g.drawImage(img, cursorX - tileSize / 2, cursorY - tileSize / 2, this);
             }
         }
     }
 
     /**
-     * Draws all chess pieces on the board.
+     * Redraws the squares whose piece or highlight changed and repaints only them.
+     * May be called from any thread after the game changed the board.
      */
-    private void drawPieces(Graphics g) {
+    public void refresh() {
+        if (!SwingUtilities.isEventDispatchThread()) {
+            SwingUtilities.invokeLater(this::refresh);
+        } else if (pieceLayer != null) {
+            updateLayers();
+        } else {
+            repaint();
+        }
+    }
+
+    // Makes the layers for the current size and draws them completely
+    private void createLayers() {
+        GraphicsConfiguration gc = getGraphicsConfiguration();
+        layerConfiguration = gc;
+        boardLayer = gc.createCompatibleImage(getWidth(), getHeight(), Transparency.OPAQUE);
+        Graphics2D g = boardLayer.createGraphics();
+        g.setColor(Color.DARK_GRAY);
+        g.fillRect(0, 0, getWidth(), getHeight());
+        g.drawImage(sprite(BOARD_SPRITE, getSquareSize()), horizontalMargin, verticalMargin, null);
+        g.dispose();
+
+        overlayLayer = gc.createCompatibleImage(getSquareSize(), getSquareSize(), Transparency.TRANSLUCENT);
+        pieceLayer = gc.createCompatibleImage(getSquareSize(), getSquareSize(), Transparency.TRANSLUCENT);
         for (int row = 0; row < BOARD_SIZE; row++) {
             for (int col = 0; col < BOARD_SIZE; col++) {
-                Chess piece = board[row][col];
-                if (piece != null) {
-                    Image img = pieceImages.get(piece.getName());
-                    if (img != null) {
-                        g.drawImage(img, getTileX(col), getTileY(row), pieceSize, pieceSize, this);
-                    }
+                drawSquare(row, col);
+            }
+        }
+        repaint();
+    }
+
+    // Redraws the changed squares in the layers and asks for them to be repainted
+    private void updateLayers() {
+        for (int row = 0; row < BOARD_SIZE; row++) {
+            for (int col = 0; col < BOARD_SIZE; col++) {
+                if (board[row][col] != drawnPieces[row][col] || !Objects.equals(getHighlight(row, col), drawnHighlights[row][col])) {
+                    drawSquare(row, col);
+                    repaint(horizontalMargin + col * tileSize, verticalMargin + row * tileSize, tileSize, tileSize);
                 }
             }
         }
     }
 
+    // Draws one square of the overlay and piece layers
+    private void drawSquare(int row, int col) {
+        Chess piece = board[row][col];
+        String highlight = getHighlight(row, col);
+        drawnPieces[row][col] = piece;
+        drawnHighlights[row][col] = highlight;
+        int x = col * tileSize;
+        int y = row * tileSize;
+
+        Graphics2D g = overlayLayer.createGraphics();
+        clearSquare(g, x, y);
+        if (highlight != null) {
+            g.drawImage(sprite(highlight, tileSize), x, y, null);
+        }
+        g.dispose();
+
+        g = pieceLayer.createGraphics();
+        clearSquare(g, x, y);
+        if (piece != null) {
+            Image img = sprite(piece.getName(), pieceSize);
+            if (img != null) {
+                g.drawImage(img, x + pieceMargin, y + pieceMargin, null);
+            }
+        }
+        g.dispose();
+    }
+
+    private void clearSquare(Graphics2D g, int x, int y) {
+        g.setComposite(AlphaComposite.Clear);
+        g.fillRect(x, y, tileSize, tileSize);
+        g.setComposite(AlphaComposite.SrcOver);
+    }
+
+    /**
+     * The highlight of a square that was part of the opponent's or this player's last move, or null.
+     */
+    private String getHighlight(int row, int col) {
+        if (isOnMove(game.getLastMove(false), row, col)) {
+            return LAST_MOVE_SPRITE;
+        }
+        return isOnMove(game.getLastMove(true), row, col) ? PREMOVE_SPRITE : null;
+    }
+
+    private static boolean isOnMove(int[] move, int row, int col) {
+        return move != null && (move[0] == row && move[1] == col || move[2] == row && move[3] == col);
+    }
+
+    /**
+     * The area the dragged piece covers.
+     */
+    private Rectangle getFloatingBounds() {
+        return new Rectangle(cursorX - tileSize / 2, cursorY - tileSize / 2, tileSize, tileSize);
+    }
+
     /**
-     * Adjusts dimensions based on current window size.
+     * A square image scaled to the given size once, rather than on every paint.
+     */
+    private Image sprite(String name, int size) {
+        return sprites.get(name, size, size, getGraphicsConfiguration());
+    }
+
+    /**
+     * Adjusts dimensions based on current window size. The scaled images are only made again when the tile size changes.
      */
     private void adjustDimensions() {
         int width = getWidth();
@@ -226,7 +363,11 @@ public class ChessGameGUI extends JPanel {
         horizontalMargin = 0;
         verticalMargin = 0;
 
-        tileSize = Math.min(width, height) / BOARD_SIZE;
+        int newTileSize = Math.min(width, height) / BOARD_SIZE;
+        if (newTileSize != tileSize) {
+            sprites.invalidate();
+        }
+        tileSize = newTileSize;
         if (width > height) {
             horizontalMargin = (width - height) / 2;
         } else {
@@ -299,12 +440,8 @@ public class ChessGameGUI extends JPanel {
                 pieceTypeCode = 4;
         }
         
-        // Place the new piece on the board
-        board[row][col] = newPiece;
-        
-        // Send move information to opponent
-        game.getClient().sendMove(ChessMessage.MOVE, new int[] {selectedRow, selectedCol, row, col});
-        game.getClient().sendMove(ChessMessage.PLACE, new int[] {1, pieceTypeCode, row, col});
+        // Place the new piece on the board; the game reports the finished move
+        game.promote(row, col, newPiece, pieceTypeCode);
     }
 
     /**
@@ -335,21 +472,122 @@ public class ChessGameGUI extends JPanel {
     }
 
     /**
-     * Displays a checkmate message.
+     * Displays a checkmate message, or a draw message if there is no winner (playerID 0).
      */
     public void checkmate(int playerID) {
-        String colour = (playerID == 1) ? "White" : "Black";
         floatingPiece = null;
         repaint();
+        if (playerID == 0) {
+            JOptionPane.showMessageDialog(this,
+                    "The Game Is A Draw",
+                    "DRAW",
+                    JOptionPane.INFORMATION_MESSAGE,
+                    null);
+            offerNewGame();
+            return;
+        }
+        String colour = (playerID == 1) ? "White" : "Black";
         JOptionPane.showMessageDialog(this, 
                 colour + " Won The Game", 
                 "CHECK MATE", 
                 JOptionPane.INFORMATION_MESSAGE, 
                 null);
+        offerNewGame();
+    }
+
+    /**
+     * Asks the player whether to look for another opponent once a game is over.
+     */
+    private void offerNewGame() {
+        int option = JOptionPane.showConfirmDialog(this,
+                "Do you want to play another game?",
+                "New Game",
+                JOptionPane.YES_NO_OPTION);
+        if (option == JOptionPane.YES_OPTION) {
+            game.reset();
+        }
+    }
+
+    /**
+     * Asks the player whether to wait for another opponent after theirs left.
+     */
+    private void offerNewOpponent() {
+        int option = JOptionPane.showOptionDialog(null,
+                "Your opponent has disconnected. Would you like to wait for a new opponent?",
+                "Opponent Disconnected",
+                JOptionPane.YES_NO_OPTION,
+                JOptionPane.QUESTION_MESSAGE,
+                null,
+                new String[]{"Wait for new opponent", "Exit game"},
+                "Wait for new opponent");
+
+        if (option == JOptionPane.NO_OPTION) {
+            System.exit(0);
+        } else {
+            // Reset the game board and ask the server for a new opponent
+            game.reset();
+        }
+    }
+
+    @Override
+    public void moveApplied(int playerID, int[] move, boolean capture) {
+        refresh();
     }
 
-    public Chess getFloatingPiece() {
-        return floatingPiece;
+    @Override
+    public void moveTakenBack(int playerID) {
+        refresh();
+    }
+
+    @Override
+    public void positionChanged() {
+        refresh();
+    }
+
+    @Override
+    public void promotionNeeded(int row, int col, int colour) {
+        onEventThread(() -> promotion(row, col, colour));
+    }
+
+    @Override
+    public void gameOver(int winner) {
+        onEventThread(() -> checkmate(winner));
+    }
+
+    @Override
+    public void opponentLeft() {
+        onEventThread(this::offerNewOpponent);
+    }
+
+    @Override
+    public void connectionLost() {
+        SwingUtilities.invokeLater(() -> {
+            JOptionPane.showMessageDialog(null,
+                    "Lost connection to the server. Please restart the game.",
+                    "Connection Lost",
+                    JOptionPane.ERROR_MESSAGE);
+            System.exit(0);
+        });
+    }
+
+    // Runs the task now if this is the event dispatch thread, or later on it
+    private static void onEventThread(Runnable task) {
+        if (SwingUtilities.isEventDispatchThread()) {
+            task.run();
+        } else {
+            SwingUtilities.invokeLater(task);
+        }
+    }
+
+    /**
+     * Closes the window of this game.
+     */
+    public void close() {
+        game.removeListener(this);
+        Window window = SwingUtilities.getWindowAncestor(this);
+        if (window != null) {
+            window.dispose();
+        }
     }
 
     /**
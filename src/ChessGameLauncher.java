@@ -0,0 +1,91 @@
+import javax.swing.*;
+import java.io.IOException;
+
+/**
+ * Starts the desktop game: asks whether to host or join, starts the server when hosting, and
+ * subscribes the sounds, the network client and a window for each game to a ChessGame.
+ */
+public class ChessGameLauncher {
+    private final ChessGame game = new ChessGame();
+    private ChessGameGUI gui; // window of the current game, used on the event dispatch thread
+
+    private ChessGameLauncher() throws IOException {
+        SoundPlayer.preload(); // Decoded once, before the first move
+        game.addListener(SoundPlayer.gameSounds());
+        game.addListener(new GameListener() {
+            @Override
+            public void gameStarted(int playerID) {
+                openWindow(); // The client starts the game on the event dispatch thread
+            }
+        });
+        promptForNetworkSetup();
+    }
+
+    /**
+     * Replaces the window of the previous game with one for the game that has just started.
+     */
+    private void openWindow() {
+        if (gui != null) {
+            gui.close();
+        }
+        gui = new ChessGameGUI(game);
+    }
+
+    /**
+     * Prompts user to host or join a game and sets up networking.
+     */
+    private void promptForNetworkSetup() throws IOException {
+        int choice = JOptionPane.showConfirmDialog(
+                null,
+                "Do you want to host the game?",
+                "Host or Join",
+                JOptionPane.YES_NO_OPTION
+        );
+
+        if (choice == JOptionPane.YES_OPTION) {
+            setupAsHost();
+        } else {
+            setupAsClient();
+        }
+    }
+
+    /**
+     * Sets up the game as host (server).
+     */
+    private void setupAsHost() throws IOException {
+        String portInput = JOptionPane.showInputDialog(null, "Enter the port to host the game:", "2396");
+        int port = Integer.parseInt(portInput);
+        boolean botOpponent = JOptionPane.showConfirmDialog(
+                null,
+                "Do you want to play against the computer?",
+                "Opponent",
+                JOptionPane.YES_NO_OPTION
+        ) == JOptionPane.YES_OPTION;
+
+        // Start the server in a new thread, kept busy by its selector loop, which outlives the dialogs
+        Threads.startKeepAlive("chess-server", () -> {
+            try {
+                new ChessGameServer(botOpponent).start(port);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+
+        // Initialize the client to connect to localhost
+        new ChessGameClient(game, SwingUtilities::invokeLater, "localhost", port);
+    }
+
+    /**
+     * Sets up the game as client (connecting to a server).
+     */
+    private void setupAsClient() throws IOException {
+        String serverAddress = JOptionPane.showInputDialog(null, "Input the server IP address", "localhost");
+        String portInput = JOptionPane.showInputDialog(null, "Enter the port of the game:", "2396");
+        int port = Integer.parseInt(portInput);
+        new ChessGameClient(game, SwingUtilities::invokeLater, serverAddress, port);
+    }
+
+    public static void main(String[] args) throws IOException {
+        new ChessGameLauncher();
+    }
+}
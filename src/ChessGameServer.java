@@ -1,173 +1,383 @@
 import java.io.*;
 import java.net.*;
+import java.nio.channels.*;
+import java.security.SecureRandom;
 import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Hosts any number of games in one process. A single selector thread accepts connections,
+ * reads and writes every socket without blocking and runs every GameRoom, so rooms need no locks.
+ * A new player sends JOIN with their rating and is paired by the Matchmaker, or seated with a
+ * computer opponent if the server has one. Finished rooms are kept and reused.
+ * A client may instead send SPECTATE to watch a game in progress.
+ * <p>
+ * Every player gets a SESSION token when their game starts. If their connection drops, the seat is
+ * kept for RECONNECT_GRACE_SECONDS: a new connection that sends RECONNECT with the token takes the
+ * seat back and gets a SNAPSHOT of the game, so it is back in sync after one round trip.
+ * <p>
+ * The server keeps ServerMetrics, logged every {@code chess.metrics.dumpSeconds} seconds (60 by
+ * default, 0 for never) and served on localhost at /metrics if {@code chess.metrics.port} is set.
+ */
 public class ChessGameServer {
-    private int port;
-    private final List<PlayerHandler> players = new ArrayList<>();
-    private int firstPlayerID = (new Random().nextBoolean()) ? 1 : -1;
-    private boolean gameInProgress = false;
+    private static final long BOT_MOVE_TIME_MILLIS = 1000;
+    private static final int BOT_THREADS = Runtime.getRuntime().availableProcessors();
+    private static final long RECONNECT_GRACE_SECONDS = 30;
+    private static final long MATCH_WAITING_SECONDS = 2; // how often waiting players are matched again
+    private static final int METRICS_PORT = Integer.getInteger("chess.metrics.port", 0); // 0 for no endpoint
+    private static final long METRICS_DUMP_SECONDS = Long.getLong("chess.metrics.dumpSeconds", 60);
 
-    // Start the server and listen for incoming connections
+    private final boolean botOpponent; // seat a computer player when a human is alone
+    private final TranspositionTable botTable; // shared by every computer player of this server
+    private final ExecutorService botExecutor;
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>(); // run on the selector thread
+    private final Matchmaker<ClientConnection> matchmaker;
+    private final Deque<GameRoom> freeRooms = new ArrayDeque<>(); // rooms kept for the next games
+    private final Map<Integer, GameRoom> activeRooms = new LinkedHashMap<>(); // by room ID, oldest first
+    private final Map<Long, ClientConnection> sessions = new HashMap<>(); // seated players by session token
+    private final SecureRandom tokens = new SecureRandom();
+    private final ServerMetrics metrics = new ServerMetrics();
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(Threads.daemonFactory("chess-timer-"));
+    private volatile Selector selector;
+    private int nextRoomID = 1;
+    private int roomCount = 0; // games in progress
+
+    public ChessGameServer() {
+        this(false);
+    }
+
+    public ChessGameServer(boolean botOpponent) {
+        this(botOpponent, Matchmaker.Mode.valueOf(System.getProperty("chess.matchmaking", "FIFO").toUpperCase()));
+    }
+
+    public ChessGameServer(boolean botOpponent, Matchmaker.Mode matchmaking) {
+        this.botOpponent = botOpponent;
+        this.matchmaker = new Matchmaker<>(matchmaking);
+        this.botTable = botOpponent ? new TranspositionTable(TranspositionTable.DEFAULT_SIZE_MB) : null;
+        this.botExecutor = botOpponent ? Executors.newFixedThreadPool(BOT_THREADS, Threads.daemonFactory("chess-bot-")) : null;
+    }
+
+    // Start the server and handle connections until the process ends
     public void start(int port) throws IOException {
-        this.port = port;
-        System.out.println("Chess Game Server started on port " + port);
+        try (Selector selector = Selector.open(); ServerSocketChannel serverChannel = ServerSocketChannel.open()) {
+            this.selector = selector;
+            serverChannel.bind(new InetSocketAddress(port));
+            serverChannel.configureBlocking(false);
+            serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+            Log.info("Chess Game Server started on port {}", port);
+            startMetrics();
+            timer.scheduleAtFixedRate(() -> execute(this::matchWaitingPlayers), MATCH_WAITING_SECONDS, MATCH_WAITING_SECONDS,
+                    TimeUnit.SECONDS);
 
-        try (ServerSocket serverSocket = new ServerSocket(port)) {
             while (true) {
-                Socket socket = serverSocket.accept();
-                handleNewConnection(socket);
+                selector.select();
+                for (Runnable task; (task = tasks.poll()) != null; ) {
+                    task.run();
+                }
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        handleNewConnection(serverChannel.accept());
+                    } else {
+                        ((ClientConnection) key.attachment()).handleReady();
+                    }
+                }
             }
         } catch (IOException e) {
-            e.printStackTrace();
+            Log.error("Server stopped: {}", e.getMessage(), e);
         }
     }
 
-    // Handle new player connections
-    private synchronized void handleNewConnection(Socket socket) {
-        // Remove disconnected players
-        players.removeIf(player -> !player.isConnected());
-
-        if (players.size() < 2) {
-            int playerID = players.isEmpty() ? firstPlayerID : -firstPlayerID;
-            PlayerHandler player = new PlayerHandler(socket, playerID);
-            players.add(player);
-            System.out.println("New player connected with ID: " + playerID);
-            new Thread(player).start();
-
-            if (players.size() == 2) {
-                startGame();
-            }
-        } else {
+    private void startMetrics() {
+        timer.scheduleAtFixedRate(metrics::tick, 1, 1, TimeUnit.SECONDS);
+        if (METRICS_DUMP_SECONDS > 0) {
+            timer.scheduleAtFixedRate(() -> Log.info("Server metrics:\n{}", metrics.report().stripTrailing()),
+                    METRICS_DUMP_SECONDS, METRICS_DUMP_SECONDS, TimeUnit.SECONDS);
+        }
+        if (METRICS_PORT > 0) {
             try {
-                socket.close();
-                System.out.println("Rejected connection: game is full");
+                metrics.serve(METRICS_PORT);
+                Log.info("Metrics at http://localhost:{}/metrics", METRICS_PORT);
             } catch (IOException e) {
-                e.printStackTrace();
+                Log.warn("Failed to serve metrics on port {}: {}", METRICS_PORT, e.getMessage());
             }
         }
     }
 
-    // Start the game when two players are connected
-    private synchronized void startGame() {
-        if (!gameInProgress && players.size() == 2) {
-            System.out.println("Two players connected. Starting the game...");
-            gameInProgress = true;
-            for (PlayerHandler player : players) {
-                // Ensure the data field is an int[] (even if it's empty)
-                ChessMessage startMessage = new ChessMessage(ChessMessage.START, 0, player.playerID);
-                player.sendMessage(startMessage);
-            }
+    public ServerMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Runs a task on the selector thread, which owns every room and connection.
+     */
+    public void execute(Runnable task) {
+        tasks.add(task);
+        Selector current = selector;
+        if (current != null) {
+            current.wakeup();
         }
     }
 
-    // Handle player disconnection
-    private synchronized void handlePlayerDisconnection(PlayerHandler disconnectedPlayer) {
-        players.remove(disconnectedPlayer);
-        gameInProgress = false;
-        firstPlayerID = (new Random().nextBoolean()) ? 1 : -1; // Randomize first player for next game
+    // Register a new connection; the player waits in the lobby until it sends JOIN
+    private void handleNewConnection(SocketChannel channel) {
+        if (channel == null) {
+            return;
+        }
+        try {
+            new ClientConnection(this, channel, selector);
+            metrics.connectionOpened();
+            Log.info("New player connected ({} games, {} waiting)", roomCount, matchmaker.size());
+        } catch (IOException e) {
+            Log.warn("Failed to set up connection: {}", e.getMessage());
+        }
+    }
 
-        // Notify remaining player about opponent disconnection
-        if (!players.isEmpty()) {
-            ChessMessage disconnectMessage = new ChessMessage(ChessMessage.QUIT, 0, disconnectedPlayer.playerID);
-            players.getFirst().sendMessage(disconnectMessage);
-            System.out.println("Player " + disconnectedPlayer.playerID + " disconnected. Waiting for new player...");
-        } else {
-            System.out.println("All players disconnected. Waiting for new players...");
+    /**
+     * Handles a message from a player who is not in a game.
+     */
+    void handleLobbyMessage(ClientConnection player, ChessMessage message) {
+        if (message.type() == ChessMessage.RECONNECT) {
+            resume(player, (Long) message.data());
+            return;
+        }
+        if (message.type() != ChessMessage.JOIN && message.type() != ChessMessage.SPECTATE) {
+            return; // Left over from a game that has ended
+        }
+        if (player.getWatchedRoom() != null) {
+            player.getWatchedRoom().removeSpectator(player);
+        }
+        if (message.type() == ChessMessage.SPECTATE) {
+            matchmaker.leave(player);
+            watch(player, (Integer) message.data());
+            return;
+        }
+        if (botOpponent) {
+            GameRoom room = acquireRoom();
+            seat(room, player);
+            room.seat(new BotSeat(room, room.nextPlayerID()));
+            startSessions(room);
+            return;
+        }
+        ClientConnection opponent = matchmaker.join(player, (Integer) message.data());
+        if (opponent != null) {
+            startGame(opponent, player);
         }
     }
 
-    // Inner class to handle player communication
-    private class PlayerHandler implements Runnable {
-        private final Socket socket;
-        private final int playerID;
-        private ObjectOutputStream oos;
-        private ObjectInputStream ois;
-        private boolean connected = true;
+    // Pairs the players whose rating window has widened enough while they waited
+    private void matchWaitingPlayers() {
+        for (Matchmaker.Pair<ClientConnection> pair : matchmaker.matchWaiting(System.nanoTime())) {
+            startGame(pair.first(), pair.second());
+        }
+    }
 
-        public PlayerHandler(Socket socket, int playerID) {
-            this.socket = socket;
-            this.playerID = playerID;
+    private void startGame(ClientConnection waited, ClientConnection player) {
+        GameRoom room = acquireRoom();
+        seat(room, waited); // The longest waiting player takes the first, random colour
+        seat(room, player);
+        startSessions(room);
+    }
+
+    // Gives every network player of a game that has just started the token to rejoin it
+    private void startSessions(GameRoom room) {
+        for (GameRoom.Seat seat : room.getSeats()) {
+            if (seat instanceof ClientConnection player) {
+                long token;
+                do {
+                    token = tokens.nextLong();
+                } while (token == 0 || sessions.containsKey(token));
+                player.setSessionToken(token);
+                sessions.put(token, player);
+                player.send(new ChessMessage(ChessMessage.SESSION, 0, token));
+            }
         }
+    }
 
-        public boolean isConnected() {
-            return connected && !socket.isClosed();
+    // Hands the seat of a dropped player to their new connection and brings its board up to date
+    private void resume(ClientConnection player, long token) {
+        ClientConnection previous = sessions.get(token);
+        if (previous == null || previous.getRoom() == null || player.getRoom() != null) {
+            player.send(new ChessMessage(ChessMessage.QUIT, 0, 0)); // The game is over
+            return;
         }
+        matchmaker.leave(player);
+        if (player.getWatchedRoom() != null) {
+            player.getWatchedRoom().removeSpectator(player);
+        }
+        GameRoom room = previous.getRoom();
+        player.setRoom(room, previous.playerID());
+        player.setSessionToken(token);
+        sessions.put(token, player);
+        room.replaceSeat(previous, player);
+        previous.setRoom(null, 0);
+        previous.setSessionToken(0);
+        previous.close(); // The old socket may not have noticed it is dead yet
+        // A pawn move whose PLACE was lost with the old connection is dropped, with a snapshot for everyone
+        if (!room.cancelPromotion()) {
+            player.send(room.snapshotMessage());
+        }
+    }
 
-        @Override
-        public void run() {
-            try {
-                oos = new ObjectOutputStream(socket.getOutputStream());
-                ois = new ObjectInputStream(socket.getInputStream());
+    // Adds a spectator to the given room, or for room ID 0 to the game in progress with the fewest
+    // spectators, so that several observers of any game are spread over different games
+    private void watch(ClientConnection spectator, int roomID) {
+        GameRoom room = roomID == 0 ? activeRooms.values().stream().filter(GameRoom::isGameInProgress)
+                .min(Comparator.comparingInt(GameRoom::spectatorCount)).orElse(null)
+                : activeRooms.get(roomID);
+        if (room == null || !room.isGameInProgress()) {
+            spectator.send(new ChessMessage(ChessMessage.QUIT, 0, 0)); // Nothing to watch
+            return;
+        }
+        room.addSpectator(spectator);
+    }
 
-                while (connected) {
-                    ChessMessage message = (ChessMessage) ois.readObject();
-                    handleClientMessage(message);
-                }
-            } catch (IOException | ClassNotFoundException e) {
-                System.out.println("Player " + playerID + " disconnected unexpectedly");
-                connected = false;
-                handlePlayerDisconnection(this);
-            } finally {
-                cleanup();
-            }
+    private void seat(GameRoom room, ClientConnection player) {
+        player.setRoom(room, room.nextPlayerID());
+        room.seat(player);
+    }
+
+    private GameRoom acquireRoom() {
+        GameRoom room = freeRooms.pollFirst();
+        if (room == null) {
+            room = new GameRoom(nextRoomID++, metrics, this::recycleRoom);
         }
+        activeRooms.put(room.getId(), room);
+        roomCount++;
+        metrics.roomOpened();
+        return room;
+    }
 
-        // Clean up resources
-        private void cleanup() {
-            try {
-                if (oos != null) oos.close();
-                if (ois != null) ois.close();
-                if (socket != null && !socket.isClosed()) socket.close();
-            } catch (IOException e) {
-                e.printStackTrace();
+    // Called by a room whose game has ended: its players return to the lobby and the room waits for the next game
+    private void recycleRoom(GameRoom room) {
+        for (GameRoom.Seat seat : room.getSeats()) {
+            if (seat instanceof ClientConnection player) {
+                sessions.remove(player.getSessionToken(), player);
+                player.setSessionToken(0);
+                player.setRoom(null, 0);
+            } else {
+                seat.close(); // The bot leaves with its opponent
             }
         }
+        room.reset();
+        activeRooms.remove(room.getId());
+        freeRooms.addLast(room);
+        roomCount--;
+        metrics.roomClosed();
+    }
 
-        // Handle messages from the client
-        private void handleClientMessage(ChessMessage message) {
-            switch (message.type()) {
-                case ChessMessage.MOVE, ChessMessage.PLACE -> forwardMove(message);
-                case ChessMessage.CHECKMATE -> endGame(message);
-            }
-            System.out.println("Received message from player " + message.playerID() + ": " + message.type() + " " + Arrays.toString((int[]) message.data()));
+    // Handle player disconnection; a player in a game keeps their seat for a while in case they reconnect
+    void handleDisconnection(ClientConnection player) {
+        GameRoom room = player.getRoom();
+        if (room != null && room.isGameInProgress() && player.getSessionToken() != 0) {
+            Log.info("Room {}: player {} dropped, keeping the seat for {}s", room.getId(), player.playerID(), RECONNECT_GRACE_SECONDS);
+            timer.schedule(() -> execute(() -> expireSession(player)), RECONNECT_GRACE_SECONDS, TimeUnit.SECONDS);
+        } else if (room != null) {
+            room.leave(player);
+        } else if (player.getWatchedRoom() != null) {
+            player.getWatchedRoom().removeSpectator(player);
+        } else {
+            matchmaker.leave(player);
         }
+    }
 
-        // Forward move messages to the other player
-        private void forwardMove(ChessMessage message) {
-            for (PlayerHandler player : players) {
-                if (player.playerID != message.playerID() && player.isConnected()) {
-                    player.sendMessage(message);
-                    System.out.println("Forwarded message to player " + player.playerID + ": " + message.type() + " " + Arrays.toString((int[]) message.data()));
-                }
-            }
+    // Ends the game of a dropped player who did not come back in time
+    private void expireSession(ClientConnection player) {
+        GameRoom room = player.getRoom();
+        if (room != null && sessions.remove(player.getSessionToken(), player)) {
+            room.leave(player);
+        }
+    }
+
+    // Computer player seated in place of a second human. Its searches run on the bot thread pool,
+    // one message at a time, and its replies are handed back to the selector thread.
+    private class BotSeat implements GameRoom.Seat {
+        private final GameRoom room;
+        private final int playerID;
+        private final EnginePlayer engine;
+        private final ArrayDeque<ChessMessage> inbox = new ArrayDeque<>();
+        private boolean scheduled = false; // guarded by inbox
+        private volatile boolean connected = true;
+
+        public BotSeat(GameRoom room, int playerID) {
+            this.room = room;
+            this.playerID = playerID;
+            engine = new EnginePlayer(playerID, BOT_MOVE_TIME_MILLIS, botTable);
+        }
+
+        @Override
+        public int playerID() {
+            return playerID;
         }
 
-        // End the game and notify players
-        private void endGame(ChessMessage message) {
-            gameInProgress = false;
-            for (PlayerHandler player : players) {
-                if (player.isConnected()) {
-                    player.sendMessage(message);
+        @Override
+        public boolean isBot() {
+            return true;
+        }
+
+        @Override
+        public void send(ChessMessage message) {
+            if (!connected) {
+                return;
+            }
+            synchronized (inbox) {
+                inbox.add(message);
+                if (scheduled) {
+                    return;
                 }
+                scheduled = true;
             }
-            System.out.println("Game ended with message: " + message.type() + " " + Arrays.toString((int[]) message.data()));
+            botExecutor.execute(this::drainInbox);
         }
 
-        // Send a message to the client
-        private void sendMessage(ChessMessage message) {
-            try {
-                if (isConnected()) {
-                    oos.writeObject(message);
-                    System.out.println("Sent message to player " + playerID + ": " + message.type() +
-                            " " + (message.data() instanceof int[] ?
-                            Arrays.toString((int[]) message.data()) :
-                            message.data()));
+        private void drainInbox() {
+            while (true) {
+                ChessMessage message;
+                synchronized (inbox) {
+                    message = inbox.poll();
+                    if (message == null) {
+                        scheduled = false;
+                        return;
+                    }
+                }
+                List<ChessMessage> replies;
+                try {
+                    replies = engine.handleMessage(message);
+                } catch (RuntimeException e) {
+                    // The bot cannot go on, so it leaves and its opponent is told the game is over
+                    Log.error("Computer player of room {} failed", room.getId(), e);
+                    connected = false;
+                    synchronized (inbox) {
+                        inbox.clear();
+                        scheduled = false;
+                    }
+                    execute(() -> room.leave(this));
+                    return;
+                }
+                if (!replies.isEmpty()) {
+                    execute(() -> {
+                        for (ChessMessage reply : replies) {
+                            if (connected) {
+                                room.handleMessage(this, reply);
+                            }
+                        }
+                    });
                 }
-            } catch (IOException e) {
-                connected = false;
-                handlePlayerDisconnection(this);
             }
         }
+
+        @Override
+        public void close() {
+            connected = false;
+        }
     }
 }
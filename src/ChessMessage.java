@@ -1,11 +1,24 @@
-import java.io.Serializable;
+import java.util.Arrays;
 
-public record ChessMessage(int type, int playerID, Object data) implements Serializable {
+/**
+ * Message between a client and the server, sent over the network by ChessMessageCodec.
+ */
+public record ChessMessage(int type, int playerID, Object data) {
     public static final int START = 0;  // Start game and send player color
     public static final int MOVE = 1;  // Player move
     public static final int CHECKMATE = 2;  // End game
     public static final int QUIT = 3;
     public static final int PLACE = 4; //send a message containing PlayerID and the pieces that it places (1) / removes (-1): data: int[4]: [place/remove, piece, row, col]
     //piece type: 0: pawn, 1: knight, 2: bishop, 3: rook, 4: queen, 5: king
-    public static final int RETURN = 5; //return to last move, decided by the sender (PlayerID)
+    public static final int RETURN = 5; //return to last move, decided by the sender (PlayerID); a rejected message is answered with SNAPSHOT instead
+    public static final int JOIN = 6; //ask the server for an opponent: data: the player's rating
+    public static final int SNAPSHOT = 7; //whole position of a game, to resynchronise a board: data: FEN string
+    public static final int SPECTATE = 8; //watch a game: data: room ID, or 0 for any game in progress
+    public static final int SESSION = 9; //sent by the server after START: data: token that lets the player rejoin the game
+    public static final int RECONNECT = 10; //rejoin a game after losing the connection: data: the session token
+
+    @Override
+    public String toString() {
+        return "type " + type + " from player " + playerID + ": " + (data instanceof int[] array ? Arrays.toString(array) : data);
+    }
 }
@@ -0,0 +1,218 @@
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Binary wire format of ChessMessage, used by both the client and the server.
+ * <p>
+ * Each frame is a header byte holding the protocol version (high 4 bits) and the message type
+ * (low 4 bits), the sender's player ID as a signed byte, and a fixed-width payload whose size
+ * depends only on the type:
+ * <pre>
+ * START      1 byte   colour of the receiving player
+ * MOVE       2 bytes  fromRow, fromCol, toRow, toCol, 3 bits each
+ * CHECKMATE  1 byte   winner, or 0 for a draw
+ * QUIT       1 byte   ID of the player who left
+ * PLACE      2 bytes  place flag (1 bit), piece (3 bits), row, col (3 bits each)
+ * RETURN     none
+ * JOIN       2 bytes  rating, unsigned
+ * SNAPSHOT   29 bytes occupied squares (8 bytes), piece on each occupied square from a1 upwards
+ *                     (4 bits each, 16 bytes), side to move and castling rights (1 byte),
+ *                     en passant file + 1 (1 byte), halfmove clock (1 byte), fullmove number (2 bytes)
+ * SPECTATE   2 bytes  room ID, unsigned
+ * SESSION    8 bytes  session token
+ * RECONNECT  8 bytes  session token
+ * </pre>
+ * A move therefore takes 4 bytes on the wire.
+ */
+public final class ChessMessageCodec {
+    public static final int VERSION = 4;
+    public static final int MAX_FRAME_LENGTH = 31;
+
+    private static final int HEADER_LENGTH = 2;
+    private static final int[] PAYLOAD_LENGTH = {1, 2, 1, 1, 2, 0, 2, 29, 2, 8, 8}; // indexed by message type
+    private static final String PIECE_LETTERS = "PNBRQKpnbrqk"; // by BoardState piece index
+
+    private ChessMessageCodec() {
+    }
+
+    /**
+     * Length of a whole frame given its first byte.
+     *
+     * @throws IOException if the header names another protocol version or an unknown type
+     */
+    public static int frameLength(int header) throws IOException {
+        int version = (header >>> 4) & 15;
+        int type = header & 15;
+        if (version != VERSION) {
+            throw new IOException("Unsupported protocol version " + version);
+        }
+        if (type >= PAYLOAD_LENGTH.length) {
+            throw new IOException("Unknown message type " + type);
+        }
+        return HEADER_LENGTH + PAYLOAD_LENGTH[type];
+    }
+
+    /**
+     * Appends the frame of a message to the buffer, which must have MAX_FRAME_LENGTH bytes left.
+     */
+    public static void encode(ChessMessage message, ByteBuffer buffer) {
+        int type = message.type();
+        buffer.put((byte) (VERSION << 4 | type));
+        buffer.put((byte) message.playerID());
+        switch (type) {
+            case ChessMessage.START, ChessMessage.CHECKMATE, ChessMessage.QUIT -> buffer.put((byte) (int) (Integer) message.data());
+            case ChessMessage.MOVE -> {
+                int[] move = (int[]) message.data();
+                buffer.putShort((short) (move[0] << 9 | move[1] << 6 | move[2] << 3 | move[3]));
+            }
+            case ChessMessage.PLACE -> {
+                int[] place = (int[]) message.data();
+                int flag = place[0] == 1 ? 1 : 0;
+                buffer.putShort((short) (flag << 9 | place[1] << 6 | place[2] << 3 | place[3]));
+            }
+            case ChessMessage.RETURN -> {
+            }
+            case ChessMessage.JOIN, ChessMessage.SPECTATE -> buffer.putShort((short) Math.clamp((Integer) message.data(), 0, 0xFFFF));
+            case ChessMessage.SNAPSHOT -> encodeSnapshot((String) message.data(), buffer);
+            case ChessMessage.SESSION, ChessMessage.RECONNECT -> buffer.putLong((Long) message.data());
+            default -> throw new IllegalArgumentException("Unknown message type " + type);
+        }
+    }
+
+    public static byte[] encode(ChessMessage message) {
+        ByteBuffer buffer = ByteBuffer.allocate(MAX_FRAME_LENGTH);
+        encode(message, buffer);
+        byte[] frame = new byte[buffer.position()];
+        buffer.flip().get(frame);
+        return frame;
+    }
+
+    /**
+     * Reads one message from the buffer.
+     *
+     * @return the message, or null if the buffer does not hold a whole frame yet, in which case nothing is consumed
+     * @throws IOException if the frame is not valid
+     */
+    public static ChessMessage decode(ByteBuffer buffer) throws IOException {
+        if (!buffer.hasRemaining() || buffer.remaining() < frameLength(buffer.get(buffer.position()))) {
+            return null;
+        }
+        int type = buffer.get() & 15;
+        int playerID = buffer.get();
+        Object data = switch (type) {
+            case ChessMessage.START, ChessMessage.CHECKMATE, ChessMessage.QUIT -> (int) buffer.get();
+            case ChessMessage.MOVE -> {
+                int bits = buffer.getShort() & 0xFFF;
+                yield new int[] {bits >>> 9, (bits >>> 6) & 7, (bits >>> 3) & 7, bits & 7};
+            }
+            case ChessMessage.PLACE -> {
+                int bits = buffer.getShort() & 0x3FF;
+                yield new int[] {(bits >>> 9) == 1 ? 1 : -1, (bits >>> 6) & 7, (bits >>> 3) & 7, bits & 7};
+            }
+            case ChessMessage.JOIN, ChessMessage.SPECTATE -> buffer.getShort() & 0xFFFF;
+            case ChessMessage.SNAPSHOT -> decodeSnapshot(buffer);
+            case ChessMessage.SESSION, ChessMessage.RECONNECT -> buffer.getLong();
+            default -> null;
+        };
+        return new ChessMessage(type, playerID, data);
+    }
+
+    private static void encodeSnapshot(String fen, ByteBuffer buffer) {
+        BoardState state = new BoardState();
+        state.setFen(fen);
+        long occupied = state.occupied();
+        buffer.putLong(occupied);
+        byte[] pieces = new byte[16];
+        int index = 0;
+        for (long squares = occupied; squares != 0 && index < 32; squares &= squares - 1, index++) {
+            pieces[index >>> 1] |= (byte) (state.pieceAt(Bitboards.lsb(squares)) << ((index & 1) * 4));
+        }
+        buffer.put(pieces);
+        buffer.put((byte) (state.sideToMove() | state.castlingRights() << 1));
+        int epSquare = state.enPassantSquare();
+        buffer.put((byte) (epSquare == BoardState.NO_SQUARE ? 0 : Bitboards.file(epSquare) + 1));
+        buffer.put((byte) Math.min(state.halfmoveClock(), 255));
+        buffer.putShort((short) state.fullmoveNumber());
+    }
+
+    private static String decodeSnapshot(ByteBuffer buffer) {
+        long occupied = buffer.getLong();
+        byte[] pieces = new byte[16];
+        buffer.get(pieces);
+        int flags = buffer.get();
+        int epFile = buffer.get() - 1;
+        int halfmoveClock = buffer.get() & 0xFF;
+        int fullmoveNumber = buffer.getShort() & 0xFFFF;
+
+        char[] board = new char[64];
+        int index = 0;
+        for (long squares = occupied; squares != 0 && index < 32; squares &= squares - 1, index++) {
+            int piece = (pieces[index >>> 1] >>> ((index & 1) * 4)) & 15;
+            board[Bitboards.lsb(squares)] = piece < PIECE_LETTERS.length() ? PIECE_LETTERS.charAt(piece) : 'P';
+        }
+        StringBuilder fen = new StringBuilder();
+        for (int rank = 7; rank >= 0; rank--) {
+            int empty = 0;
+            for (int file = 0; file < 8; file++) {
+                char letter = board[rank * 8 + file];
+                if (letter == 0) {
+                    empty++;
+                    continue;
+                }
+                if (empty > 0) {
+                    fen.append(empty);
+                    empty = 0;
+                }
+                fen.append(letter);
+            }
+            if (empty > 0) {
+                fen.append(empty);
+            }
+            if (rank > 0) {
+                fen.append('/');
+            }
+        }
+
+        int side = flags & 1;
+        int castling = (flags >>> 1) & 15;
+        fen.append(side == BoardState.WHITE ? " w " : " b ");
+        fen.append(castling == 0 ? "-" : ((castling & BoardState.WHITE_KINGSIDE) != 0 ? "K" : "")
+                + ((castling & BoardState.WHITE_QUEENSIDE) != 0 ? "Q" : "")
+                + ((castling & BoardState.BLACK_KINGSIDE) != 0 ? "k" : "")
+                + ((castling & BoardState.BLACK_QUEENSIDE) != 0 ? "q" : ""));
+        // The en passant square lies behind the pawn that just moved
+        fen.append(' ').append(epFile < 0 ? "-" : Move.squareName((side == BoardState.WHITE ? 40 : 16) + epFile));
+        fen.append(' ').append(halfmoveClock).append(' ').append(fullmoveNumber);
+        return fen.toString();
+    }
+
+    /**
+     * Writes a message as a single write call, so frames sent by several threads never interleave.
+     */
+    public static void write(OutputStream out, ChessMessage message) throws IOException {
+        byte[] frame = encode(message);
+        synchronized (out) {
+            out.write(frame);
+            out.flush();
+        }
+    }
+
+    /**
+     * Blocks until a whole message has been read.
+     *
+     * @throws EOFException if the stream ends
+     */
+    public static ChessMessage read(DataInputStream in) throws IOException {
+        int header = in.read();
+        if (header < 0) {
+            throw new EOFException("Connection closed");
+        }
+        byte[] frame = new byte[frameLength(header)];
+        frame[0] = (byte) header;
+        in.readFully(frame, 1, frame.length - 1);
+        return decode(ByteBuffer.wrap(frame));
+    }
+}
@@ -0,0 +1,242 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+
+/**
+ * A network player of a ChessGameServer: a non-blocking socket channel with its read and write buffers.
+ * Between games the player has no room and its messages go to the server's lobby.
+ * <p>
+ * A connection can also watch a room as a spectator. Broadcast frames are encoded once by the room
+ * and shared by every spectator; each spectator keeps a bounded queue of them, written with one
+ * gathering write. A spectator that falls too far behind loses its queue and gets a SNAPSHOT of the
+ * game once it has caught up, so a slow watcher never holds up the players or the server.
+ * Only the server's selector thread uses it.
+ */
+public class ClientConnection implements GameRoom.Seat {
+    private static final int BUFFER_SIZE = 256;
+    private static final int MAX_PENDING_BYTES = 64 * 1024; // a client this far behind is dropped
+    private static final int MAX_SHARED_FRAMES = 64; // broadcast frames queued before falling back to a snapshot
+
+    private final ChessGameServer server;
+    private final SocketChannel channel;
+    private final SelectionKey key;
+    private GameRoom room; // null while the player is not in a game
+    private int playerID;
+    private long sessionToken = 0; // lets the player take their seat back after a dropped connection, 0 if none
+    private final ByteBuffer readBuffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private ByteBuffer writeBuffer = ByteBuffer.allocate(BUFFER_SIZE); // frames not written yet
+    private boolean connected = true;
+    private GameRoom watchedRoom; // room this connection is a spectator of, or null
+    private final ArrayDeque<ByteBuffer> sharedFrames = new ArrayDeque<>(); // broadcast frames not written yet
+    private final ByteBuffer[] gather = new ByteBuffer[MAX_SHARED_FRAMES];
+    private boolean resyncPending = false;
+
+    public ClientConnection(ChessGameServer server, SocketChannel channel, Selector selector) throws IOException {
+        this.server = server;
+        this.channel = channel;
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true); // Frames are a few bytes each and should leave at once
+        key = channel.register(selector, SelectionKey.OP_READ, this);
+    }
+
+    @Override
+    public int playerID() {
+        return playerID;
+    }
+
+    public GameRoom getRoom() {
+        return room;
+    }
+
+    /**
+     * Moves the player into a room with the given colour, or out of its room if {@code room} is null.
+     */
+    public void setRoom(GameRoom room, int playerID) {
+        this.room = room;
+        this.playerID = playerID;
+    }
+
+    public long getSessionToken() {
+        return sessionToken;
+    }
+
+    public void setSessionToken(long sessionToken) {
+        this.sessionToken = sessionToken;
+    }
+
+    public GameRoom getWatchedRoom() {
+        return watchedRoom;
+    }
+
+    public void setWatchedRoom(GameRoom room) {
+        watchedRoom = room;
+        resyncPending = false;
+        // A frame already partly written must be finished, or the stream would be corrupted
+        ByteBuffer head = sharedFrames.peekFirst();
+        sharedFrames.clear();
+        if (head != null && head.position() > 0) {
+            sharedFrames.add(head);
+        }
+    }
+
+    /**
+     * Stops watching a room whose game has ended. The frames already queued are still written, as
+     * they end with the end of the game; a spectator waiting for a resync missed that frame, so it
+     * gets the final position and the end message instead.
+     */
+    public void stopWatching(ChessMessage endMessage) {
+        if (resyncPending) {
+            resyncPending = false;
+            send(watchedRoom.snapshotMessage());
+            send(endMessage);
+        }
+        watchedRoom = null;
+    }
+
+    /**
+     * Called by the selector when the channel can be read or written.
+     */
+    public void handleReady() {
+        if (key.isValid() && key.isReadable()) {
+            read();
+        }
+        if (key.isValid() && key.isWritable()) {
+            flush();
+        }
+    }
+
+    private void read() {
+        try {
+            int bytes = channel.read(readBuffer);
+            if (bytes < 0) {
+                disconnect();
+                return;
+            }
+            long received = System.nanoTime();
+            server.getMetrics().bytesRead(bytes);
+            readBuffer.flip();
+            ChessMessage message;
+            while (connected && (message = ChessMessageCodec.decode(readBuffer)) != null) {
+                if (room != null) {
+                    room.handleMessage(this, message);
+                    if (message.type() == ChessMessage.MOVE || message.type() == ChessMessage.PLACE) {
+                        server.getMetrics().recordForward(System.nanoTime() - received);
+                    }
+                } else {
+                    server.handleLobbyMessage(this, message);
+                }
+            }
+            readBuffer.compact();
+        } catch (IOException e) {
+            Log.info("Player {} sent an invalid message: {}", playerID, e.getMessage());
+            disconnect();
+        }
+    }
+
+    @Override
+    public void send(ChessMessage message) {
+        if (!connected) {
+            return;
+        }
+        if (writeBuffer.remaining() < ChessMessageCodec.MAX_FRAME_LENGTH) {
+            if (writeBuffer.capacity() >= MAX_PENDING_BYTES) {
+                Log.warn("Player {} is not reading its messages", playerID);
+                disconnect();
+                return;
+            }
+            ByteBuffer larger = ByteBuffer.allocate(writeBuffer.capacity() * 2);
+            writeBuffer.flip();
+            larger.put(writeBuffer);
+            writeBuffer = larger;
+        }
+        ChessMessageCodec.encode(message, writeBuffer);
+        flush();
+    }
+
+    /**
+     * Queues a frame encoded once for every spectator of a room. The buffer is not modified.
+     */
+    public void sendShared(ByteBuffer frame) {
+        if (!connected || resyncPending) {
+            return;
+        }
+        if (sharedFrames.size() == MAX_SHARED_FRAMES) {
+            // Too far behind: drop the backlog and send the whole position once the socket drains
+            setWatchedRoom(watchedRoom);
+            resyncPending = true;
+            return;
+        }
+        sharedFrames.add(frame.duplicate());
+        flush();
+    }
+
+    // Writes what the socket takes now and asks the selector to report when it takes the rest
+    private void flush() {
+        try {
+            long written = 0;
+            ByteBuffer head = sharedFrames.peekFirst();
+            if (head != null && head.position() > 0) {
+                // Finish a shared frame already partly written before anything else goes out
+                written += channel.write(head);
+                if (!head.hasRemaining()) {
+                    sharedFrames.pollFirst();
+                }
+            }
+            head = sharedFrames.peekFirst();
+            if (head == null || head.position() == 0) {
+                writeBuffer.flip();
+                written += channel.write(writeBuffer);
+                writeBuffer.compact();
+            }
+            if (writeBuffer.position() == 0 && !sharedFrames.isEmpty()) {
+                int count = 0;
+                for (ByteBuffer frame : sharedFrames) {
+                    gather[count++] = frame;
+                }
+                written += channel.write(gather, 0, count);
+                while (!sharedFrames.isEmpty() && !sharedFrames.peekFirst().hasRemaining()) {
+                    sharedFrames.pollFirst();
+                }
+            }
+            server.getMetrics().bytesWritten(written);
+            boolean pending = writeBuffer.position() > 0 || !sharedFrames.isEmpty();
+            key.interestOps(pending ? SelectionKey.OP_READ | SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+            if (!pending && resyncPending) {
+                resyncPending = false;
+                if (watchedRoom != null) {
+                    send(watchedRoom.snapshotMessage());
+                }
+            }
+        } catch (IOException e) {
+            disconnect();
+        }
+    }
+
+    /**
+     * Closes the connection and lets the server remove the player once the current event is handled,
+     * so a room never loses a seat while it is sending to its seats.
+     */
+    private void disconnect() {
+        if (connected) {
+            close();
+            server.execute(() -> server.handleDisconnection(this));
+        }
+    }
+
+    @Override
+    public void close() {
+        if (connected) {
+            server.getMetrics().connectionClosed();
+        }
+        connected = false;
+        key.cancel();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            Log.warn("Failed to close the connection of player {}", playerID, e);
+        }
+    }
+}
@@ -0,0 +1,126 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A computer opponent. It follows the game through the same messages a remote player receives
+ * and answers with the messages a human's client would send.
+ */
+public class EnginePlayer extends ChessPlayer {
+    private static final int MAX_DEPTH = SearchEngine.MAX_PLY;
+
+    private final BoardState state = new BoardState();
+    private final MoveList legalMoves = new MoveList();
+    private final TranspositionTable table;
+    private final SearchEngine engine;
+    private final long moveTimeMillis;
+    private int promotionFrom = BoardState.NO_SQUARE; // opponent pawn waiting for its PLACE message
+    private boolean gameOver = true;
+
+    /**
+     * @param table transposition table, which may be shared by several engine players
+     */
+    public EnginePlayer(int colour, long moveTimeMillis, TranspositionTable table) {
+        super(colour, 1);
+        this.moveTimeMillis = moveTimeMillis;
+        this.table = table;
+        this.engine = new SearchEngine(table);
+    }
+
+    /**
+     * For a subclass that picks its moves with {@link #chooseMove(BoardState)} instead of searching.
+     */
+    protected EnginePlayer(int colour) {
+        super(colour, 1);
+        this.moveTimeMillis = 0;
+        this.table = null;
+        this.engine = null;
+    }
+
+    /**
+     * Follows a message sent to this player.
+     *
+     * @return the messages to send back, with this player's move if it is now its turn
+     */
+    public List<ChessMessage> handleMessage(ChessMessage message) {
+        switch (message.type()) {
+            case ChessMessage.START -> {
+                state.setStartPosition();
+                promotionFrom = BoardState.NO_SQUARE;
+                gameOver = false;
+            }
+            case ChessMessage.SNAPSHOT -> {
+                // The room rejected this player's move, or the opponent's take-back crossed it
+                state.setFen((String) message.data());
+                promotionFrom = BoardState.NO_SQUARE;
+            }
+            case ChessMessage.MOVE -> applyOpponentMove((int[]) message.data());
+            case ChessMessage.PLACE -> applyOpponentPromotion((int[]) message.data());
+            case ChessMessage.RETURN -> {
+                if (state.ply() > 0 && state.sideToMove() == BoardState.side(getColour())) {
+                    state.unmakeMove();
+                }
+            }
+            case ChessMessage.CHECKMATE, ChessMessage.QUIT -> gameOver = true;
+        }
+
+        if (gameOver || promotionFrom != BoardState.NO_SQUARE || state.sideToMove() != BoardState.side(getColour())) {
+            return List.of();
+        }
+        return play();
+    }
+
+    private void applyOpponentMove(int[] move) {
+        int opponent = -getColour();
+        int from = BoardState.square(move[0], move[1], opponent);
+        MoveGenerator.generateLegal(state, legalMoves);
+        int legalMove = MoveGenerator.findMove(legalMoves, from, BoardState.square(move[2], move[3], opponent), BoardState.QUEEN);
+        if (Move.isPromotion(legalMove)) {
+            promotionFrom = from; // Played once the PLACE message names the piece
+        } else if (legalMove != Move.NONE) {
+            state.makeMove(legalMove);
+        }
+    }
+
+    private void applyOpponentPromotion(int[] placement) {
+        if (promotionFrom == BoardState.NO_SQUARE || placement[0] != 1) {
+            return;
+        }
+        MoveGenerator.generateLegal(state, legalMoves);
+        int move = MoveGenerator.findMove(legalMoves, promotionFrom, BoardState.square(placement[2], placement[3], -getColour()), placement[1]);
+        promotionFrom = BoardState.NO_SQUARE;
+        if (move != Move.NONE) {
+            state.makeMove(move);
+        }
+    }
+
+    /**
+     * Searches for a move, plays it and describes it in this player's board coordinates.
+     */
+    private List<ChessMessage> play() {
+        List<ChessMessage> replies = new ArrayList<>();
+        int move = chooseMove(state);
+        if (move == Move.NONE) {
+            return replies;
+        }
+        state.makeMove(move);
+
+        int colour = getColour();
+        int from = Move.from(move);
+        int drop = Move.dropSquare(move);
+        int toRow = BoardState.row(drop, colour);
+        int toCol = BoardState.col(drop);
+        replies.add(new ChessMessage(ChessMessage.MOVE, colour, new int[] {BoardState.row(from, colour), BoardState.col(from), toRow, toCol}));
+        if (Move.isPromotion(move)) {
+            replies.add(new ChessMessage(ChessMessage.PLACE, colour, new int[] {1, Move.promotion(move), toRow, toCol}));
+        }
+        return replies;
+    }
+
+    /**
+     * The move to play in the position, or Move.NONE if there is none.
+     */
+    protected int chooseMove(BoardState position) {
+        table.newSearch();
+        return engine.findBestMove(position, moveTimeMillis, MAX_DEPTH);
+    }
+}
@@ -0,0 +1,74 @@
+/**
+ * Receives the events of a ChessGame. The GUI, the sounds and the network client each subscribe to
+ * the game instead of the game calling them, so the game itself needs neither Swing nor a socket.
+ * <p>
+ * Events arrive on the thread that owns the game, the event dispatch thread for the desktop game,
+ * whether the local player or the opponent acted. Coordinates are rows and columns of the
+ * local player's view of the board, and players are identified by colour (1 white, -1 black).
+ */
+public interface GameListener {
+    /**
+     * A game has started and its board is set up.
+     */
+    default void gameStarted(int playerID) {
+    }
+
+    /**
+     * A move was played: {from row, from col, to row, to col}. A promotion is reported once its
+     * piece is known, just before {@link #piecePromoted}.
+     */
+    default void moveApplied(int playerID, int[] move, boolean capture) {
+    }
+
+    /**
+     * A piece was taken off the board by a move.
+     */
+    default void pieceCaptured(Chess piece) {
+    }
+
+    /**
+     * The local player moved a pawn to the last rank and has to choose its piece with
+     * {@link ChessGame#promote}.
+     */
+    default void promotionNeeded(int row, int col, int colour) {
+    }
+
+    /**
+     * A pawn was replaced by the piece of the given BoardState type.
+     */
+    default void piecePromoted(int playerID, int row, int col, int pieceType) {
+    }
+
+    /**
+     * The last move was taken back at the request of the given player.
+     */
+    default void moveTakenBack(int playerID) {
+    }
+
+    /**
+     * The board was rebuilt or changed outside of a move, for example from a snapshot.
+     */
+    default void positionChanged() {
+    }
+
+    /**
+     * The game ended; the winner is 0 for a draw.
+     */
+    default void gameOver(int winner) {
+    }
+
+    default void opponentLeft() {
+    }
+
+    /**
+     * The finished game was cleared and the player is ready for another one.
+     */
+    default void gameReset() {
+    }
+
+    /**
+     * The server cannot be reached any more, so the game cannot go on.
+     */
+    default void connectionLost() {
+    }
+}
@@ -0,0 +1,335 @@
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
+
+/**
+ * One game of a ChessGameServer: up to two seats and the state of their game.
+ * A room is only used from the server's selector thread, so it needs no locking.
+ * <p>
+ * The room keeps the position of its game and only forwards moves that are legal in it, so a client
+ * cannot cheat or desynchronise its opponent. It also decides itself when the game is over by
+ * checkmate, stalemate, threefold repetition or the fifty-move rule; CHECKMATE messages from clients
+ * are ignored. When its game ends, or a player quits, the room tells the server, which frees the seats
+ * and keeps the room for another game.
+ * <p>
+ * A message the room rejects is answered with a SNAPSHOT of its position, which replaces the
+ * sender's board. RETURN only ever means that the opponent took back a move, so a take-back that
+ * crosses the opponent's reply cannot leave either side a move behind.
+ * While a promotion waits for its PLACE, anything else from the promoting player drops the pawn move
+ * and everyone gets the position without it; the other player's rejected message is answered once
+ * the promotion is decided.
+ * <p>
+ * Any number of spectators may watch the room. They get a SNAPSHOT when they arrive, then the moves
+ * and the end of the game, each encoded once and shared by all of them.
+ */
+public class GameRoom {
+    /**
+     * A player seated in a room: a network client or a computer player.
+     */
+    public interface Seat {
+        int playerID();
+
+        void send(ChessMessage message);
+
+        void close();
+
+        default boolean isBot() {
+            return false;
+        }
+    }
+
+    private final int id;
+    private final ServerMetrics metrics;
+    private final Consumer<GameRoom> onGameOver;
+    private final List<Seat> seats = new ArrayList<>(2);
+    private final List<ClientConnection> spectators = new ArrayList<>();
+    private int firstPlayerID = randomColour();
+    private boolean gameInProgress = false;
+    private final BoardState state = new BoardState();
+    private final MoveList legalMoves = new MoveList();
+    private int promotionFrom = BoardState.NO_SQUARE; // pawn move waiting for the PLACE naming its piece
+    private int promotionDrop = BoardState.NO_SQUARE;
+    private ChessMessage endMessage; // CHECKMATE or QUIT that ended the game, for the spectators
+    private Seat resyncAfterPromotion; // rejected while a promotion was pending, so resynchronised once it is decided
+
+    public GameRoom(int id, ServerMetrics metrics, Consumer<GameRoom> onGameOver) {
+        this.id = id;
+        this.metrics = metrics;
+        this.onGameOver = onGameOver;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    private static int randomColour() {
+        return ThreadLocalRandom.current().nextBoolean() ? 1 : -1;
+    }
+
+    /**
+     * Colour of the next player to sit down: random for the first, the other colour for the second.
+     */
+    public int nextPlayerID() {
+        return seats.isEmpty() ? firstPlayerID : -seats.getFirst().playerID();
+    }
+
+    public boolean isFull() {
+        return seats.size() == 2;
+    }
+
+    public List<Seat> getSeats() {
+        return seats;
+    }
+
+    public boolean isGameInProgress() {
+        return gameInProgress;
+    }
+
+    public void addSpectator(ClientConnection spectator) {
+        spectators.add(spectator);
+        spectator.setWatchedRoom(this);
+        spectator.send(snapshotMessage());
+        Log.info("Room {}: spectator joined ({} watching)", id, spectators.size());
+    }
+
+    public int spectatorCount() {
+        return spectators.size();
+    }
+
+    public void removeSpectator(ClientConnection spectator) {
+        spectators.remove(spectator);
+        spectator.setWatchedRoom(null);
+    }
+
+    /**
+     * The current position of the game, for a board that has to catch up.
+     */
+    public ChessMessage snapshotMessage() {
+        return new ChessMessage(ChessMessage.SNAPSHOT, 0, state.toFen());
+    }
+
+    // Sends a message to every spectator, encoding it only once
+    private void broadcast(ChessMessage message) {
+        if (spectators.isEmpty()) {
+            return;
+        }
+        ByteBuffer frame = ByteBuffer.wrap(ChessMessageCodec.encode(message));
+        for (ClientConnection spectator : spectators) {
+            spectator.sendShared(frame);
+        }
+    }
+
+    /**
+     * Seats a player who was given {@link #nextPlayerID()}, and starts the game once both seats are taken.
+     */
+    public void seat(Seat seat) {
+        seats.add(seat);
+        Log.info("Room {}: player {}{} seated", id, seat.playerID(), seat.isBot() ? " (computer)" : "");
+        if (isFull()) {
+            startGame();
+        }
+    }
+
+    private void startGame() {
+        if (!gameInProgress) {
+            Log.info("Room {}: starting the game", id);
+            gameInProgress = true;
+            state.setStartPosition();
+            promotionFrom = BoardState.NO_SQUARE;
+            resyncAfterPromotion = null;
+            for (Seat seat : seats) {
+                seat.send(new ChessMessage(ChessMessage.START, 0, seat.playerID()));
+            }
+        }
+    }
+
+    /**
+     * Handles a message sent by one of the seats.
+     */
+    public void handleMessage(Seat sender, ChessMessage message) {
+        Log.debug("Room {}: player {} sent {}", id, sender.playerID(), message);
+        if (!gameInProgress) {
+            return;
+        }
+        boolean accepted;
+        switch (message.type()) {
+            case ChessMessage.MOVE -> accepted = applyMove(sender.playerID(), (int[]) message.data());
+            case ChessMessage.PLACE -> accepted = applyPromotion(sender.playerID(), (int[]) message.data());
+            case ChessMessage.RETURN -> accepted = takeBack(sender.playerID());
+            default -> {
+                return; // The room decides when the game ends
+            }
+        }
+        if (!accepted) {
+            // Replace the sender's board, which may have moved on or back in the meantime
+            Log.info("Room {}: rejected illegal message from player {}", id, sender.playerID());
+            if (promotionFrom == BoardState.NO_SQUARE) {
+                sender.send(snapshotMessage());
+            } else if (state.sideToMove() == BoardState.side(sender.playerID())) {
+                cancelPromotion(); // Anything but a valid PLACE from the promoting player drops the pawn move
+            } else {
+                resyncAfterPromotion = sender; // A snapshot now would lack the pawn move the sender has seen
+            }
+            return;
+        }
+        forwardMove(sender, message);
+        if (resyncAfterPromotion != null && promotionFrom == BoardState.NO_SQUARE) {
+            resyncAfterPromotion.send(snapshotMessage());
+            resyncAfterPromotion = null;
+        }
+        if (message.type() != ChessMessage.RETURN && promotionFrom == BoardState.NO_SQUARE) {
+            checkGameOver(sender.playerID());
+        }
+    }
+
+    private boolean isTurnOf(int colour) {
+        return state.sideToMove() == BoardState.side(colour) && promotionFrom == BoardState.NO_SQUARE;
+    }
+
+    // Plays a move given in the sender's view of the board; a promotion waits for its PLACE
+    private boolean applyMove(int colour, int[] move) {
+        if (!isTurnOf(colour)) {
+            return false;
+        }
+        int from = BoardState.square(move[0], move[1], colour);
+        int drop = BoardState.square(move[2], move[3], colour);
+        MoveGenerator.generateLegal(state, legalMoves);
+        int legalMove = MoveGenerator.findMove(legalMoves, from, drop, BoardState.QUEEN);
+        if (legalMove == Move.NONE) {
+            return false;
+        }
+        if (Move.isPromotion(legalMove)) {
+            promotionFrom = from;
+            promotionDrop = drop;
+        } else {
+            state.makeMove(legalMove);
+        }
+        return true;
+    }
+
+    private boolean applyPromotion(int colour, int[] placement) {
+        if (promotionFrom == BoardState.NO_SQUARE || state.sideToMove() != BoardState.side(colour) || placement[0] != 1
+                || BoardState.square(placement[2], placement[3], colour) != promotionDrop) {
+            return false;
+        }
+        MoveGenerator.generateLegal(state, legalMoves);
+        int move = MoveGenerator.findMove(legalMoves, promotionFrom, promotionDrop, placement[1]);
+        if (move == Move.NONE) {
+            return false; // Not a piece a pawn can promote to
+        }
+        promotionFrom = BoardState.NO_SQUARE;
+        state.makeMove(move);
+        return true;
+    }
+
+    /**
+     * Drops a pawn move still waiting for the PLACE naming its piece, and sends everyone who saw it
+     * the position without it.
+     *
+     * @return false if no promotion was pending
+     */
+    public boolean cancelPromotion() {
+        if (promotionFrom == BoardState.NO_SQUARE) {
+            return false;
+        }
+        promotionFrom = BoardState.NO_SQUARE;
+        resyncAfterPromotion = null;
+        ChessMessage snapshot = snapshotMessage();
+        for (Seat seat : seats) {
+            seat.send(snapshot);
+        }
+        broadcast(snapshot);
+        return true;
+    }
+
+    // A player may take back their own last move while the opponent has not replied
+    private boolean takeBack(int colour) {
+        if (state.ply() == 0 || state.sideToMove() == BoardState.side(colour) || promotionFrom != BoardState.NO_SQUARE) {
+            return false;
+        }
+        state.unmakeMove();
+        return true;
+    }
+
+    // Ends the game if the opponent of the player who just moved cannot go on
+    private void checkGameOver(int mover) {
+        MoveGenerator.generateLegal(state, legalMoves);
+        if (legalMoves.size() == 0) {
+            endGame(new ChessMessage(ChessMessage.CHECKMATE, 0, state.inCheck() ? mover : 0));
+        } else if (state.repetitions() >= 2 || state.halfmoveClock() >= 100) {
+            endGame(new ChessMessage(ChessMessage.CHECKMATE, 0, 0));
+        }
+    }
+
+    // Forward move messages to the other player and the spectators
+    private void forwardMove(Seat sender, ChessMessage message) {
+        metrics.moveForwarded();
+        for (Seat seat : seats) {
+            if (seat != sender) {
+                seat.send(message);
+            }
+        }
+        broadcast(message);
+    }
+
+    // End the game and notify players
+    private void endGame(ChessMessage message) {
+        gameInProgress = false;
+        endMessage = message;
+        for (Seat seat : seats) {
+            seat.send(message);
+        }
+        broadcast(message);
+        Log.info("Room {}: game ended with {}", id, message.data());
+        onGameOver.accept(this);
+    }
+
+    /**
+     * Gives a seat to a new connection of the same player, who carries on the game with the same colour.
+     */
+    public void replaceSeat(Seat seat, Seat replacement) {
+        int index = seats.indexOf(seat);
+        if (index >= 0) {
+            seats.set(index, replacement);
+            if (resyncAfterPromotion == seat) {
+                resyncAfterPromotion = replacement;
+            }
+            Log.info("Room {}: player {} reconnected", id, replacement.playerID());
+        }
+    }
+
+    /**
+     * Removes a player who left and ends the game, telling the other player.
+     */
+    public void leave(Seat seat) {
+        if (!seats.remove(seat)) {
+            return;
+        }
+        gameInProgress = false;
+        ChessMessage quit = new ChessMessage(ChessMessage.QUIT, 0, seat.playerID());
+        endMessage = quit;
+        for (Seat remaining : seats) {
+            remaining.send(quit);
+        }
+        broadcast(quit);
+        Log.info("Room {}: player {} left", id, seat.playerID());
+        onGameOver.accept(this);
+    }
+
+    /**
+     * Empties the room for another game.
+     */
+    public void reset() {
+        seats.clear();
+        resyncAfterPromotion = null;
+        for (ClientConnection spectator : spectators) {
+            spectator.stopWatching(endMessage != null ? endMessage : new ChessMessage(ChessMessage.QUIT, 0, 0));
+        }
+        spectators.clear();
+        endMessage = null;
+        gameInProgress = false;
+        firstPlayerID = randomColour(); // Randomize first player for next game
+    }
+}
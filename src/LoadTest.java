@@ -0,0 +1,204 @@
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Headless load generator for ChessGameServer.
+ * <p>
+ * Each simulated client opens a socket, sends JOIN and plays random legal moves with the same
+ * binary messages as the game's own client, then joins again when its game ends. The clients run on
+ * virtual threads, so thousands of them fit in one process. Without a server address the test
+ * starts a server in the same process and also reports its metrics and heap.
+ * <p>
+ * The move latency is the time from sending a move until the opponent's reply arrives: two trips
+ * through the server plus the opponent picking a random move.
+ * <p>
+ * Usage: {@code java LoadTest [clients] [seconds] [thinkMillis] [host:port]}
+ */
+public class LoadTest {
+    private static final int DEFAULT_CLIENTS = 1000;
+    private static final int DEFAULT_SECONDS = 30;
+    private static final int READ_TIMEOUT_MILLIS = 500; // how often an idle client checks for the end of the test
+
+    private final String host;
+    private final int port;
+    private final long thinkMillis;
+    private volatile boolean running = true;
+    private final LongAdder moves = new LongAdder();
+    private final LongAdder games = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    public LoadTest(String host, int port, long thinkMillis) {
+        this.host = host;
+        this.port = port;
+        this.thinkMillis = thinkMillis;
+    }
+
+    // Plays random legal moves, following the game like the server's computer player
+    private static class RandomPlayer extends EnginePlayer {
+        private final MoveList legalMoves = new MoveList();
+
+        RandomPlayer(int colour) {
+            super(colour);
+        }
+
+        @Override
+        protected int chooseMove(BoardState position) {
+            MoveGenerator.generateLegal(position, legalMoves);
+            return legalMoves.size() == 0 ? Move.NONE : legalMoves.get(ThreadLocalRandom.current().nextInt(legalMoves.size()));
+        }
+    }
+
+    // One simulated client, until the test ends
+    private void runClient() {
+        try (Socket socket = new Socket(host, port)) {
+            socket.setTcpNoDelay(true);
+            socket.setSoTimeout(READ_TIMEOUT_MILLIS);
+            OutputStream out = socket.getOutputStream();
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            ChessMessageCodec.write(out, new ChessMessage(ChessMessage.JOIN, 0, Matchmaker.DEFAULT_RATING));
+            RandomPlayer player = null;
+            long sentAt = 0;
+            while (running) {
+                ChessMessage message;
+                try {
+                    message = ChessMessageCodec.read(in);
+                } catch (SocketTimeoutException e) {
+                    continue;
+                }
+                switch (message.type()) {
+                    case ChessMessage.START -> {
+                        player = new RandomPlayer((int) message.data());
+                        sentAt = 0;
+                    }
+                    case ChessMessage.CHECKMATE, ChessMessage.QUIT -> {
+                        games.increment();
+                        player = null;
+                        ChessMessageCodec.write(out, new ChessMessage(ChessMessage.JOIN, 0, Matchmaker.DEFAULT_RATING));
+                        continue;
+                    }
+                    case ChessMessage.MOVE -> {
+                        if (sentAt != 0) {
+                            latency.record(System.nanoTime() - sentAt);
+                        }
+                    }
+                    case ChessMessage.SNAPSHOT -> rejected.increment(); // The server's answer to a rejected move
+                }
+                if (player == null) {
+                    continue;
+                }
+                List<ChessMessage> replies = player.handleMessage(message);
+                if (replies.isEmpty()) {
+                    continue;
+                }
+                if (thinkMillis > 0) {
+                    Thread.sleep(thinkMillis);
+                }
+                for (ChessMessage reply : replies) {
+                    ChessMessageCodec.write(out, reply);
+                }
+                sentAt = System.nanoTime();
+                moves.increment();
+            }
+        } catch (IOException e) {
+            if (running) {
+                failures.increment();
+                Log.warn("Load test client failed: {}", e.getMessage());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Runs the clients for the given time and prints a report every second and at the end.
+     */
+    public void run(int clients, int seconds, ServerMetrics serverMetrics) throws InterruptedException {
+        long heapBefore = usedHeap();
+        List<Thread> threads = new ArrayList<>(clients);
+        long start = System.nanoTime();
+        for (int i = 0; i < clients; i++) {
+            threads.add(Threads.start("load-client-" + i, this::runClient));
+        }
+        long lastMoves = 0;
+        for (int second = 1; second <= seconds; second++) {
+            Thread.sleep(1000);
+            long total = moves.sum();
+            System.out.printf(Locale.ROOT, "%4ds  %8d moves/s  %7d games  p50 %s  p99 %s%n", second, total - lastMoves, games.sum(),
+                    millis(latency.percentile(0.5)), millis(latency.percentile(0.99)));
+            lastMoves = total;
+        }
+        long heapLoaded = serverMetrics != null ? usedHeap() : 0;
+        double elapsed = (System.nanoTime() - start) / 1e9;
+        running = false;
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        System.out.println();
+        System.out.printf(Locale.ROOT, "Clients            %d (%d failed)%n", clients, failures.sum());
+        System.out.printf(Locale.ROOT, "Moves              %d (%.0f/s), %d rejected%n", moves.sum(), moves.sum() / elapsed, rejected.sum());
+        System.out.printf(Locale.ROOT, "Games finished     %d (%.1f/s)%n", games.sum(), games.sum() / elapsed);
+        System.out.printf(Locale.ROOT, "Move round trip    p50 %s  p90 %s  p99 %s  p99.9 %s  max %s%n", millis(latency.percentile(0.5)),
+                millis(latency.percentile(0.9)), millis(latency.percentile(0.99)), millis(latency.percentile(0.999)), millis(latency.max()));
+        if (serverMetrics != null) {
+            LatencyHistogram forward = serverMetrics.receiveToForward();
+            System.out.printf(Locale.ROOT, "Server forward     p50 %s  p99 %s  max %s%n", millis(forward.percentile(0.5)),
+                    millis(forward.percentile(0.99)), millis(forward.max()));
+            System.out.printf(Locale.ROOT, "Heap in use        %.1f MB idle, %.1f MB under load (%.1f KB per client, clients included)%n",
+                    heapBefore / 1e6, heapLoaded / 1e6, (heapLoaded - heapBefore) / 1e3 / clients);
+        }
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static String millis(long nanos) {
+        return String.format(Locale.ROOT, "%.2fms", nanos / 1e6);
+    }
+
+    public static void main(String[] args) throws Exception {
+        int clients = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_CLIENTS;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_SECONDS;
+        long thinkMillis = args.length > 2 ? Long.parseLong(args[2]) : 0;
+        if (args.length > 3) {
+            String[] address = args[3].split(":");
+            new LoadTest(address[0], Integer.parseInt(address[1]), thinkMillis).run(clients, seconds, null);
+            return;
+        }
+
+        if (System.getProperty("chess.log") == null) {
+            Log.setLevel(Log.Level.WARN); // The server logs every connection and game at INFO
+        }
+        int port;
+        try (ServerSocket probe = new ServerSocket(0)) {
+            port = probe.getLocalPort();
+        }
+        ChessGameServer server = new ChessGameServer();
+        Threads.startPlatform("chess-server", () -> {
+            try {
+                server.start(port);
+            } catch (IOException e) {
+                Log.error("Server failed: {}", e.getMessage());
+            }
+        });
+        Thread.sleep(200); // Let the server bind its port
+        new LoadTest("localhost", port, thinkMillis).run(clients, seconds, server.getMetrics());
+        System.out.println();
+        System.out.print(server.getMetrics().report());
+    }
+}
@@ -0,0 +1,188 @@
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Logging for the server and the client, cheap enough for the per-move path.
+ * <p>
+ * A call below the level set by the system property {@code chess.log} (DEBUG, INFO, WARN, ERROR or OFF,
+ * INFO by default) returns after one comparison. Otherwise the call stores its template and arguments
+ * in a ring buffer and returns; one writer thread formats the messages and prints them, so the threads
+ * that log never format text or wait for stdout. Templates use {} for each argument, int arrays are
+ * printed with their elements, and a Throwable left over after the placeholders has its stack trace
+ * printed. When the buffer is full new messages are dropped and counted rather than blocking.
+ */
+public final class Log {
+    public enum Level {
+        DEBUG, INFO, WARN, ERROR, OFF
+    }
+
+    private static final int CAPACITY = 1 << 12; // messages waiting for the writer, a power of two
+    private static final long IDLE_PARK_NANOS = 5_000_000;
+    private static final DateTimeFormatter TIME = DateTimeFormatter.ofPattern("HH:mm:ss.SSS").withZone(ZoneId.systemDefault());
+
+    private record Event(Level level, long millis, String thread, String template, Object a, Object b, Object c) {
+    }
+
+    private static volatile Level level = Level.valueOf(System.getProperty("chess.log", "INFO").toUpperCase());
+    private static final AtomicReferenceArray<Event> ring = new AtomicReferenceArray<>(CAPACITY);
+    private static final AtomicLong writeSequence = new AtomicLong(); // next slot claimed by a logging thread
+    private static volatile long readSequence = 0; // next slot printed by the writer
+    private static final AtomicLong dropped = new AtomicLong();
+    private static final PrintStream out = System.out;
+
+    static {
+        Threads.startPlatform("chess-log", Log::writeLoop);
+        Runtime.getRuntime().addShutdownHook(new Thread(Log::drain, "chess-log-flush"));
+    }
+
+    private Log() {
+    }
+
+    public static void setLevel(Level newLevel) {
+        level = newLevel;
+    }
+
+    public static boolean isEnabled(Level messageLevel) {
+        return messageLevel.compareTo(level) >= 0 && messageLevel != Level.OFF;
+    }
+
+    // Fixed arities, so a disabled call does not even allocate a varargs array
+    public static void debug(String template) {
+        log(Level.DEBUG, template, null, null, null);
+    }
+
+    public static void debug(String template, Object a) {
+        log(Level.DEBUG, template, a, null, null);
+    }
+
+    public static void debug(String template, Object a, Object b) {
+        log(Level.DEBUG, template, a, b, null);
+    }
+
+    public static void debug(String template, Object a, Object b, Object c) {
+        log(Level.DEBUG, template, a, b, c);
+    }
+
+    public static void info(String template) {
+        log(Level.INFO, template, null, null, null);
+    }
+
+    public static void info(String template, Object a) {
+        log(Level.INFO, template, a, null, null);
+    }
+
+    public static void info(String template, Object a, Object b) {
+        log(Level.INFO, template, a, b, null);
+    }
+
+    public static void info(String template, Object a, Object b, Object c) {
+        log(Level.INFO, template, a, b, c);
+    }
+
+    public static void warn(String template) {
+        log(Level.WARN, template, null, null, null);
+    }
+
+    public static void warn(String template, Object a) {
+        log(Level.WARN, template, a, null, null);
+    }
+
+    public static void warn(String template, Object a, Object b) {
+        log(Level.WARN, template, a, b, null);
+    }
+
+    public static void error(String template, Object a) {
+        log(Level.ERROR, template, a, null, null);
+    }
+
+    public static void error(String template, Object a, Object b) {
+        log(Level.ERROR, template, a, b, null);
+    }
+
+    private static void log(Level messageLevel, String template, Object a, Object b, Object c) {
+        if (!isEnabled(messageLevel)) {
+            return;
+        }
+        long sequence;
+        do {
+            sequence = writeSequence.get();
+            if (sequence - readSequence >= CAPACITY) {
+                dropped.incrementAndGet();
+                return;
+            }
+        } while (!writeSequence.compareAndSet(sequence, sequence + 1));
+        ring.lazySet((int) (sequence & (CAPACITY - 1)), new Event(messageLevel, System.currentTimeMillis(),
+                Thread.currentThread().getName(), template, a, b, c));
+    }
+
+    private static void writeLoop() {
+        while (true) {
+            if (!drain()) {
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+        }
+    }
+
+    // Prints every message published so far; false if there was none
+    private static synchronized boolean drain() {
+        boolean printed = false;
+        while (true) {
+            int slot = (int) (readSequence & (CAPACITY - 1));
+            Event event = ring.get(slot);
+            if (event == null) {
+                break; // Not published yet, or nothing left
+            }
+            ring.lazySet(slot, null);
+            readSequence++;
+            out.println(format(event));
+            printed = true;
+        }
+        long lost = dropped.getAndSet(0);
+        if (lost > 0) {
+            out.println(TIME.format(Instant.now()) + " WARN  [chess-log] " + lost + " log messages dropped");
+        }
+        if (printed) {
+            out.flush();
+        }
+        return printed;
+    }
+
+    private static String format(Event event) {
+        StringBuilder line = new StringBuilder(96);
+        line.append(TIME.format(Instant.ofEpochMilli(event.millis()))).append(' ').append(event.level());
+        line.append(event.level().name().length() == 4 ? "  [" : " [").append(event.thread()).append("] ");
+        Object[] args = {event.a(), event.b(), event.c()};
+        int used = 0;
+        String template = event.template();
+        int start = 0;
+        for (int brace; (brace = template.indexOf("{}", start)) >= 0 && used < args.length; start = brace + 2) {
+            line.append(template, start, brace).append(describe(args[used++]));
+        }
+        line.append(template, start, template.length());
+        Throwable thrown = null;
+        for (int i = used; i < args.length; i++) {
+            if (args[i] instanceof Throwable t) {
+                thrown = t;
+            }
+        }
+        if (thrown != null) {
+            line.append(System.lineSeparator());
+            StringWriter trace = new StringWriter();
+            thrown.printStackTrace(new PrintWriter(trace));
+            line.append(trace.toString().stripTrailing());
+        }
+        return line.toString();
+    }
+
+    private static String describe(Object value) {
+        return value instanceof int[] array ? Arrays.toString(array) : String.valueOf(value);
+    }
+}
@@ -0,0 +1,174 @@
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Queue of players waiting for an opponent.
+ * <p>
+ * Waiting players are grouped into rating buckets kept in a TreeMap, and each bucket holds its players
+ * in arrival order. An arriving player is paired with the longest waiting player of the nearest
+ * non-empty bucket within reach, so each arrival costs O(log n). In FIFO mode every player shares
+ * one bucket and is simply paired with whoever has waited longest.
+ * <p>
+ * A player's reach grows by one bucket for every {@code widenMillis} spent in the queue, so a rating
+ * with no neighbour does not wait forever. {@link #matchWaiting(long)} pairs the players whose reach
+ * has grown since they joined and is meant to be called every few seconds.
+ *
+ * @param <T> the type of the players
+ */
+public class Matchmaker<T> {
+    public enum Mode {
+        FIFO, RATING
+    }
+
+    public static final int DEFAULT_RATING = 1500;
+
+    /**
+     * Two players taken out of the queue to play each other; {@code first} has waited longer.
+     */
+    public record Pair<T>(T first, T second) {
+    }
+
+    private final Mode mode;
+    private final int bucketWidth;
+    private final int maxBucketDistance;
+    private final long widenNanos;
+    private final TreeMap<Integer, LinkedHashSet<T>> buckets = new TreeMap<>(); // never holds an empty bucket
+    private final Map<T, Ticket> waiting = new HashMap<>();
+    private long arrivals = 0;
+
+    private record Ticket(int bucket, long arrival, long joinedNanos) {
+    }
+
+    /**
+     * @param bucketWidth       rating points per bucket
+     * @param maxBucketDistance how many buckets away an opponent may be found on arrival
+     * @param widenMillis       time in the queue after which a player reaches one bucket further
+     */
+    public Matchmaker(Mode mode, int bucketWidth, int maxBucketDistance, long widenMillis) {
+        this.mode = mode;
+        this.bucketWidth = bucketWidth;
+        this.maxBucketDistance = maxBucketDistance;
+        this.widenNanos = widenMillis * 1_000_000;
+    }
+
+    public Matchmaker(Mode mode) {
+        this(mode, 100, 2, 10_000);
+    }
+
+    public int size() {
+        return waiting.size();
+    }
+
+    /**
+     * Pairs an arriving player with a waiting opponent, or queues the player if there is none.
+     *
+     * @return the opponent, who is no longer waiting, or null if the player was queued
+     */
+    public T join(T player, int rating) {
+        if (waiting.containsKey(player)) {
+            return null;
+        }
+        int bucket = mode == Mode.FIFO ? 0 : Math.floorDiv(rating, bucketWidth);
+        Integer opponentBucket = nearestBucket(bucket, maxBucketDistance, null);
+        if (opponentBucket != null) {
+            return takeOldest(opponentBucket, null);
+        }
+        buckets.computeIfAbsent(bucket, key -> new LinkedHashSet<>()).add(player);
+        waiting.put(player, new Ticket(bucket, arrivals++, System.nanoTime()));
+        return null;
+    }
+
+    /**
+     * Pairs waiting players whose reach has grown enough to find an opponent, the longest waiting first.
+     *
+     * @param now the current System.nanoTime()
+     * @return the pairs taken out of the queue
+     */
+    public List<Pair<T>> matchWaiting(long now) {
+        List<Pair<T>> pairs = new ArrayList<>();
+        if (mode == Mode.FIFO || waiting.size() < 2) {
+            return pairs; // Arrivals are paired at once when any opponent is waiting
+        }
+        List<T> queue = new ArrayList<>(waiting.keySet());
+        queue.sort(Comparator.comparingLong(player -> waiting.get(player).arrival()));
+        for (T player : queue) {
+            Ticket ticket = waiting.get(player);
+            if (ticket == null) {
+                continue; // Already paired in this round
+            }
+            long reach = maxBucketDistance + (now - ticket.joinedNanos()) / widenNanos;
+            Integer opponentBucket = nearestBucket(ticket.bucket(), (int) Math.min(reach, Integer.MAX_VALUE), player);
+            if (opponentBucket != null) {
+                T opponent = takeOldest(opponentBucket, player);
+                leave(player);
+                pairs.add(new Pair<>(player, opponent));
+            }
+        }
+        return pairs;
+    }
+
+    // Takes the longest waiting player other than the given one out of a bucket
+    private T takeOldest(int bucket, T excluded) {
+        LinkedHashSet<T> players = buckets.get(bucket);
+        T opponent = oldest(players, excluded);
+        players.remove(opponent);
+        if (players.isEmpty()) {
+            buckets.remove(bucket);
+        }
+        waiting.remove(opponent);
+        return opponent;
+    }
+
+    private T oldest(LinkedHashSet<T> players, T excluded) {
+        Iterator<T> inOrder = players.iterator();
+        T player = inOrder.next();
+        return player.equals(excluded) ? inOrder.next() : player;
+    }
+
+    // Closest bucket within reach holding a player other than the given one; between two equally close
+    // ones, the one with the longest wait
+    private Integer nearestBucket(int bucket, int reach, T excluded) {
+        LinkedHashSet<T> own = buckets.get(bucket);
+        boolean ownBucketTaken = own != null && !(own.size() == 1 && own.contains(excluded));
+        Integer below = ownBucketTaken ? Integer.valueOf(bucket) : buckets.lowerKey(bucket);
+        Integer above = ownBucketTaken ? Integer.valueOf(bucket) : buckets.higherKey(bucket);
+        if (below != null && (long) bucket - below > reach) {
+            below = null;
+        }
+        if (above != null && (long) above - bucket > reach) {
+            above = null;
+        }
+        if (below == null || above == null) {
+            return below != null ? below : above;
+        }
+        int belowDistance = bucket - below;
+        int aboveDistance = above - bucket;
+        if (belowDistance != aboveDistance) {
+            return belowDistance < aboveDistance ? below : above;
+        }
+        long belowArrival = waiting.get(oldest(buckets.get(below), excluded)).arrival();
+        long aboveArrival = waiting.get(oldest(buckets.get(above), excluded)).arrival();
+        return belowArrival <= aboveArrival ? below : above;
+    }
+
+    /**
+     * Takes a player out of the queue, for example when they disconnect.
+     */
+    public void leave(T player) {
+        Ticket ticket = waiting.remove(player);
+        if (ticket == null) {
+            return;
+        }
+        LinkedHashSet<T> players = buckets.get(ticket.bucket());
+        players.remove(player);
+        if (players.isEmpty()) {
+            buckets.remove(ticket.bucket());
+        }
+    }
+}
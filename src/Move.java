@@ -0,0 +1,79 @@
+/**
+ * Helpers for moves packed into a single int, so move lists need no allocation.
+ * Bits 0-5 hold the from square, bits 6-11 the to square and bits 12-15 the flags below.
+ */
+public final class Move {
+    public static final int NONE = 0;
+
+    // Flags; bit 2 marks captures and bit 3 promotions, whose low two bits select the piece
+    public static final int QUIET = 0;
+    public static final int DOUBLE_PUSH = 1;
+    public static final int KING_CASTLE = 2;
+    public static final int QUEEN_CASTLE = 3;
+    public static final int CAPTURE = 4;
+    public static final int EN_PASSANT = 5;
+    public static final int PROMOTION = 8;
+    public static final int PROMOTION_CAPTURE = 12;
+
+    private Move() {
+    }
+
+    public static int of(int from, int to, int flags) {
+        return from | (to << 6) | (flags << 12);
+    }
+
+    public static int from(int move) {
+        return move & 63;
+    }
+
+    public static int to(int move) {
+        return (move >>> 6) & 63;
+    }
+
+    public static int flags(int move) {
+        return (move >>> 12) & 15;
+    }
+
+    public static boolean isCapture(int move) {
+        return (flags(move) & CAPTURE) != 0;
+    }
+
+    public static boolean isPromotion(int move) {
+        return (flags(move) & PROMOTION) != 0;
+    }
+
+    public static boolean isCastle(int move) {
+        return flags(move) == KING_CASTLE || flags(move) == QUEEN_CASTLE;
+    }
+
+    /**
+     * Piece type a promotion creates, from knight to queen.
+     */
+    public static int promotion(int move) {
+        return BoardState.KNIGHT + (flags(move) & 3);
+    }
+
+    /**
+     * The square the player drops the piece on. This is the destination, except for castling,
+     * which the game plays by dropping the king on its own rook.
+     */
+    public static int dropSquare(int move) {
+        return switch (flags(move)) {
+            case KING_CASTLE -> to(move) + 1;
+            case QUEEN_CASTLE -> to(move) - 2;
+            default -> to(move);
+        };
+    }
+
+    /**
+     * Long algebraic notation, e.g. e2e4 or e7e8q.
+     */
+    public static String toString(int move) {
+        String text = squareName(from(move)) + squareName(to(move));
+        return isPromotion(move) ? text + "nbrq".charAt(flags(move) & 3) : text;
+    }
+
+    public static String squareName(int square) {
+        return "" + (char) ('a' + Bitboards.file(square)) + (char) ('1' + Bitboards.rank(square));
+    }
+}
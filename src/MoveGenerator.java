@@ -0,0 +1,206 @@
+/**
+ * Generates the legal moves of a position into a MoveList.
+ * Moves are filtered with check and pin masks while they are generated, so no move is ever played to test it.
+ */
+public final class MoveGenerator {
+    private static final long WHITE_KINGSIDE_EMPTY = 0x60L;
+    private static final long WHITE_QUEENSIDE_EMPTY = 0x0EL;
+    private static final long BLACK_KINGSIDE_EMPTY = WHITE_KINGSIDE_EMPTY << 56;
+    private static final long BLACK_QUEENSIDE_EMPTY = WHITE_QUEENSIDE_EMPTY << 56;
+
+    private MoveGenerator() {
+    }
+
+    /**
+     * Clears the list and fills it with every legal move of the side to move.
+     */
+    public static void generateLegal(BoardState state, MoveList list) {
+        generate(state, list, false);
+    }
+
+    /**
+     * Clears the list and fills it with the legal captures and promotions of the side to move.
+     */
+    public static void generateCaptures(BoardState state, MoveList list) {
+        generate(state, list, true);
+    }
+
+    private static void generate(BoardState state, MoveList list, boolean capturesOnly) {
+        list.clear();
+        int us = state.sideToMove();
+        int them = us ^ 1;
+        long own = state.occupancy(us);
+        long enemy = state.occupancy(them);
+        long occupied = state.occupied();
+        int king = state.kingSquare(us);
+
+        long checkers = state.attackersTo(king, occupied) & enemy;
+        long kingTargets = capturesOnly ? enemy : ~own;
+        generateKingMoves(state, list, king, kingTargets, enemy, occupied ^ Bitboards.bit(king));
+        if (Long.bitCount(checkers) > 1) {
+            return; // Double check: only the king can move
+        }
+
+        // Non-king moves must capture the checker or block the check
+        long checkMask = checkers == 0 ? -1L : checkers | Bitboards.between(king, Bitboards.lsb(checkers));
+        long pinned = pinnedPieces(state, king, us, occupied);
+        long targets = (capturesOnly ? enemy : ~own) & checkMask;
+
+        for (long knights = state.pieces(us, BoardState.KNIGHT) & ~pinned; knights != 0; knights &= knights - 1) {
+            int from = Bitboards.lsb(knights);
+            addMoves(list, from, Bitboards.knightAttacks(from) & targets, enemy);
+        }
+        long diagonal = state.pieces(us, BoardState.BISHOP) | state.pieces(us, BoardState.QUEEN);
+        for (long bishops = diagonal; bishops != 0; bishops &= bishops - 1) {
+            int from = Bitboards.lsb(bishops);
+            addMoves(list, from, Bitboards.bishopAttacks(from, occupied) & targets & pinMask(pinned, king, from), enemy);
+        }
+        long straight = state.pieces(us, BoardState.ROOK) | state.pieces(us, BoardState.QUEEN);
+        for (long rooks = straight; rooks != 0; rooks &= rooks - 1) {
+            int from = Bitboards.lsb(rooks);
+            addMoves(list, from, Bitboards.rookAttacks(from, occupied) & targets & pinMask(pinned, king, from), enemy);
+        }
+
+        generatePawnMoves(state, list, us, king, enemy, occupied, checkMask, pinned, capturesOnly);
+        if (checkers == 0 && !capturesOnly) {
+            generateCastling(state, list, us, occupied);
+        }
+    }
+
+    /**
+     * Finds the legal move matching what a player dropped on the board.
+     * Castling matches a drop on the rook's square.
+     *
+     * @param promotion piece type to pick among promotions
+     * @return the packed move, or Move.NONE if the drop is not legal
+     */
+    public static int findMove(MoveList list, int from, int dropSquare, int promotion) {
+        for (int i = 0; i < list.size(); i++) {
+            int move = list.get(i);
+            if (Move.from(move) == from && Move.dropSquare(move) == dropSquare
+                    && (!Move.isPromotion(move) || Move.promotion(move) == promotion)) {
+                return move;
+            }
+        }
+        return Move.NONE;
+    }
+
+    /**
+     * Own pieces standing alone between the king and an enemy slider.
+     */
+    private static long pinnedPieces(BoardState state, int king, int us, long occupied) {
+        int them = us ^ 1;
+        long queens = state.pieces(them, BoardState.QUEEN);
+        long snipers = (Bitboards.rookAttacks(king, 0) & (state.pieces(them, BoardState.ROOK) | queens))
+                | (Bitboards.bishopAttacks(king, 0) & (state.pieces(them, BoardState.BISHOP) | queens));
+        long pinned = 0;
+        for (; snipers != 0; snipers &= snipers - 1) {
+            long blockers = Bitboards.between(king, Bitboards.lsb(snipers)) & occupied;
+            if (blockers != 0 && (blockers & (blockers - 1)) == 0) {
+                pinned |= blockers & state.occupancy(us);
+            }
+        }
+        return pinned;
+    }
+
+    private static long pinMask(long pinned, int king, int from) {
+        return (pinned & Bitboards.bit(from)) == 0 ? -1L : Bitboards.line(king, from);
+    }
+
+    private static void addMoves(MoveList list, int from, long targets, long enemy) {
+        for (; targets != 0; targets &= targets - 1) {
+            int to = Bitboards.lsb(targets);
+            list.add(Move.of(from, to, (enemy & Bitboards.bit(to)) != 0 ? Move.CAPTURE : Move.QUIET));
+        }
+    }
+
+    private static void generateKingMoves(BoardState state, MoveList list, int king, long kingTargets, long enemy, long occupiedWithoutKing) {
+        for (long targets = Bitboards.kingAttacks(king) & kingTargets; targets != 0; targets &= targets - 1) {
+            int to = Bitboards.lsb(targets);
+            // The king is lifted off the board so it cannot hide behind itself from a slider
+            if ((state.attackersTo(to, occupiedWithoutKing) & enemy) == 0) {
+                list.add(Move.of(king, to, (enemy & Bitboards.bit(to)) != 0 ? Move.CAPTURE : Move.QUIET));
+            }
+        }
+    }
+
+    private static void generatePawnMoves(BoardState state, MoveList list, int us, int king, long enemy,
+                                          long occupied, long checkMask, long pinned, boolean capturesOnly) {
+        long pawns = state.pieces(us, BoardState.PAWN);
+        long empty = ~occupied;
+        int forward = us == BoardState.WHITE ? 8 : -8;
+        long doublePushRank = us == BoardState.WHITE ? Bitboards.RANK_1 << 16 : Bitboards.RANK_8 >>> 16;
+
+        long singles = (us == BoardState.WHITE ? pawns << 8 : pawns >>> 8) & empty;
+        long doubles = (us == BoardState.WHITE ? (singles & doublePushRank) << 8 : (singles & doublePushRank) >>> 8) & empty;
+        if (capturesOnly) {
+            singles &= Bitboards.RANK_1 | Bitboards.RANK_8; // Only pushes that promote
+            doubles = 0;
+        }
+        for (long targets = singles & checkMask; targets != 0; targets &= targets - 1) {
+            int to = Bitboards.lsb(targets);
+            addPawnMove(list, to - forward, to, Move.QUIET, king, pinned);
+        }
+        for (long targets = doubles & checkMask; targets != 0; targets &= targets - 1) {
+            int to = Bitboards.lsb(targets);
+            addPawnMove(list, to - 2 * forward, to, Move.DOUBLE_PUSH, king, pinned);
+        }
+
+        for (long attackers = pawns; attackers != 0; attackers &= attackers - 1) {
+            int from = Bitboards.lsb(attackers);
+            for (long targets = Bitboards.pawnAttacks(us, from) & enemy & checkMask; targets != 0; targets &= targets - 1) {
+                addPawnMove(list, from, Bitboards.lsb(targets), Move.CAPTURE, king, pinned);
+            }
+        }
+
+        int epSquare = state.enPassantSquare();
+        if (epSquare != BoardState.NO_SQUARE) {
+            int captured = epSquare - forward;
+            for (long attackers = Bitboards.pawnAttacks(us ^ 1, epSquare) & pawns; attackers != 0; attackers &= attackers - 1) {
+                int from = Bitboards.lsb(attackers);
+                // Two pawns leave the rank at once, so test the king directly instead of using the masks
+                long after = (occupied ^ Bitboards.bit(from) ^ Bitboards.bit(captured)) | Bitboards.bit(epSquare);
+                if ((state.attackersTo(king, after) & enemy & ~Bitboards.bit(captured)) == 0) {
+                    list.add(Move.of(from, epSquare, Move.EN_PASSANT));
+                }
+            }
+        }
+    }
+
+    private static void addPawnMove(MoveList list, int from, int to, int flags, int king, long pinned) {
+        if ((pinned & Bitboards.bit(from)) != 0 && (Bitboards.line(king, from) & Bitboards.bit(to)) == 0) {
+            return;
+        }
+        if (Bitboards.rank(to) == 0 || Bitboards.rank(to) == 7) {
+            int promotion = flags == Move.CAPTURE ? Move.PROMOTION_CAPTURE : Move.PROMOTION;
+            for (int piece = 3; piece >= 0; piece--) {
+                list.add(Move.of(from, to, promotion | piece));
+            }
+        } else {
+            list.add(Move.of(from, to, flags));
+        }
+    }
+
+    private static void generateCastling(BoardState state, MoveList list, int us, long occupied) {
+        int rights = state.castlingRights();
+        if (us == BoardState.WHITE) {
+            if ((rights & BoardState.WHITE_KINGSIDE) != 0 && (occupied & WHITE_KINGSIDE_EMPTY) == 0
+                    && !state.isAttacked(5, BoardState.BLACK) && !state.isAttacked(6, BoardState.BLACK)) {
+                list.add(Move.of(4, 6, Move.KING_CASTLE));
+            }
+            if ((rights & BoardState.WHITE_QUEENSIDE) != 0 && (occupied & WHITE_QUEENSIDE_EMPTY) == 0
+                    && !state.isAttacked(3, BoardState.BLACK) && !state.isAttacked(2, BoardState.BLACK)) {
+                list.add(Move.of(4, 2, Move.QUEEN_CASTLE));
+            }
+        } else {
+            if ((rights & BoardState.BLACK_KINGSIDE) != 0 && (occupied & BLACK_KINGSIDE_EMPTY) == 0
+                    && !state.isAttacked(61, BoardState.WHITE) && !state.isAttacked(62, BoardState.WHITE)) {
+                list.add(Move.of(60, 62, Move.KING_CASTLE));
+            }
+            if ((rights & BoardState.BLACK_QUEENSIDE) != 0 && (occupied & BLACK_QUEENSIDE_EMPTY) == 0
+                    && !state.isAttacked(59, BoardState.WHITE) && !state.isAttacked(58, BoardState.WHITE)) {
+                list.add(Move.of(60, 58, Move.QUEEN_CASTLE));
+            }
+        }
+    }
+}
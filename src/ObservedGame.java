@@ -0,0 +1,168 @@
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Socket;
+
+/**
+ * One game followed by an ObserverGrid: a spectator connection to the server and the position it
+ * keeps up to date from the moves the server broadcasts. It asks for any game in progress, and for
+ * another one a moment after its game ends.
+ * <p>
+ * The connection's thread changes the position; the grid copies it on the event dispatch thread
+ * with {@link #copyIfChanged(int[], int[])}, so the two only share the lock for the time of a copy.
+ */
+public class ObservedGame {
+    private static final long RETRY_DELAY_MILLIS = 2000; // before watching another game or reconnecting
+
+    private final String host;
+    private final int port;
+    private final BoardState state = new BoardState();
+    private final MoveList legalMoves = new MoveList();
+    private int promotionFrom = BoardState.NO_SQUARE; // pawn move waiting for the PLACE naming its piece
+    private int lastFrom = BoardState.NO_SQUARE;
+    private int lastDrop = BoardState.NO_SQUARE;
+    private boolean changed = false; // since the last copy
+    private volatile boolean closed = false;
+    private volatile Socket socket;
+
+    public ObservedGame(String host, int port) {
+        this.host = host;
+        this.port = port;
+    }
+
+    /**
+     * Connects on a background thread and keeps watching games until {@link #close()}.
+     */
+    public void start() {
+        Threads.start("chess-observer", this::watchGames);
+    }
+
+    public void close() {
+        closed = true;
+        try {
+            if (socket != null) socket.close();
+        } catch (IOException e) {
+            Log.warn("Error closing an observer connection: {}", e.getMessage());
+        }
+    }
+
+    private void watchGames() {
+        while (!closed) {
+            try (Socket connection = new Socket(host, port)) {
+                socket = connection;
+                connection.setTcpNoDelay(true);
+                OutputStream out = connection.getOutputStream();
+                DataInputStream in = new DataInputStream(new BufferedInputStream(connection.getInputStream()));
+                ChessMessageCodec.write(out, new ChessMessage(ChessMessage.SPECTATE, 0, 0));
+                while (!closed) {
+                    if (!handleMessage(ChessMessageCodec.read(in))) {
+                        Thread.sleep(RETRY_DELAY_MILLIS);
+                        ChessMessageCodec.write(out, new ChessMessage(ChessMessage.SPECTATE, 0, 0));
+                    }
+                }
+            } catch (IOException e) {
+                if (closed) {
+                    return;
+                }
+                Log.warn("Observer lost the server: {}", e.getMessage());
+                try {
+                    Thread.sleep(RETRY_DELAY_MILLIS);
+                } catch (InterruptedException interrupted) {
+                    return;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Follows one message of the watched game.
+     *
+     * @return false if the game is over, or there was no game to watch
+     */
+    synchronized boolean handleMessage(ChessMessage message) {
+        boolean watching = true;
+        switch (message.type()) {
+            case ChessMessage.SNAPSHOT -> {
+                state.setFen((String) message.data());
+                promotionFrom = BoardState.NO_SQUARE;
+                lastFrom = BoardState.NO_SQUARE;
+                lastDrop = BoardState.NO_SQUARE;
+            }
+            case ChessMessage.MOVE -> applyMove((int[]) message.data());
+            case ChessMessage.PLACE -> applyPromotion((int[]) message.data());
+            case ChessMessage.RETURN -> {
+                // A move played before the snapshot cannot be taken back here, so watch afresh
+                watching = state.ply() > 0;
+                if (watching) {
+                    state.unmakeMove();
+                }
+                lastFrom = BoardState.NO_SQUARE;
+                lastDrop = BoardState.NO_SQUARE;
+            }
+            case ChessMessage.CHECKMATE, ChessMessage.QUIT -> watching = false;
+            default -> {
+                return true;
+            }
+        }
+        changed = true;
+        return watching;
+    }
+
+    // The server only broadcasts moves it accepted, so the mover is always the side to move
+    private int mover() {
+        return state.sideToMove() == BoardState.WHITE ? 1 : -1;
+    }
+
+    private void applyMove(int[] move) {
+        int from = BoardState.square(move[0], move[1], mover());
+        int drop = BoardState.square(move[2], move[3], mover());
+        MoveGenerator.generateLegal(state, legalMoves);
+        int legalMove = MoveGenerator.findMove(legalMoves, from, drop, BoardState.QUEEN);
+        if (legalMove == Move.NONE) {
+            return;
+        }
+        lastFrom = from;
+        lastDrop = drop;
+        if (Move.isPromotion(legalMove)) {
+            promotionFrom = from; // Played once the PLACE message names the piece
+        } else {
+            state.makeMove(legalMove);
+        }
+    }
+
+    private void applyPromotion(int[] placement) {
+        if (promotionFrom == BoardState.NO_SQUARE || placement[0] != 1) {
+            return;
+        }
+        MoveGenerator.generateLegal(state, legalMoves);
+        int move = MoveGenerator.findMove(legalMoves, promotionFrom, BoardState.square(placement[2], placement[3], mover()), placement[1]);
+        promotionFrom = BoardState.NO_SQUARE;
+        if (move != Move.NONE) {
+            state.makeMove(move);
+        }
+    }
+
+    /**
+     * Copies the position if it changed since the last copy.
+     *
+     * @param pieces   filled with the piece on each square, as BoardState.pieceAt gives it
+     * @param lastMove filled with the from and drop squares of the last move, or NO_SQUARE
+     * @return false if nothing was copied
+     */
+    public synchronized boolean copyIfChanged(int[] pieces, int[] lastMove) {
+        if (!changed) {
+            return false;
+        }
+        changed = false;
+        for (int square = 0; square < pieces.length; square++) {
+            pieces[square] = state.pieceAt(square);
+        }
+        lastMove[0] = lastFrom;
+        lastMove[1] = lastDrop;
+        return true;
+    }
+}
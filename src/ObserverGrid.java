@@ -0,0 +1,235 @@
+import javax.swing.*;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+
+/**
+ * Watches many games at once: a grid of small boards, each fed by an ObservedGame.
+ * <p>
+ * The boards share one SpriteCache, so each piece is scaled once for all of them, and each board
+ * keeps its picture in an image of its own in which only the squares that changed are redrawn.
+ * Nothing is repainted when a move arrives. A single Swing timer collects the changes of every board
+ * FRAMES_PER_SECOND times a second and repaints them with one call, so a frame costs as much as the
+ * squares that changed in it rather than as much as the boards on screen.
+ * <p>
+ * Frame times are logged at DEBUG level every few seconds.
+ * <p>
+ * Usage: {@code java ObserverGrid [boards] [host:port]}
+ */
+public class ObserverGrid extends JPanel {
+    private static final int DEFAULT_BOARDS = 16;
+    private static final String DEFAULT_ADDRESS = "localhost:2396";
+    private static final int FRAMES_PER_SECOND = 60;
+    private static final int BOARD_SIZE = 8;
+    private static final int GAP = 4; // pixels between boards
+    private static final long REPORT_NANOS = 10_000_000_000L;
+    private static final String BOARD_SPRITE = "board";
+    private static final String LAST_MOVE_SPRITE = "lastMove";
+    private static final String[] PIECE_SPRITES = {"wP", "wN", "wB", "wR", "wQ", "wK", "bP", "bN", "bB", "bR", "bQ", "bK"}; // by piece code
+
+    // One board of the grid, and what its image shows
+    private static class Cell {
+        final ObservedGame game;
+        final int[] pieces = new int[64];
+        final int[] lastMove = {BoardState.NO_SQUARE, BoardState.NO_SQUARE};
+        final int[] drawnPieces = new int[64];
+        final boolean[] drawnHighlights = new boolean[64];
+        BufferedImage image;
+        int x;
+        int y;
+
+        Cell(ObservedGame game) {
+            this.game = game;
+            Arrays.fill(pieces, BoardState.NO_PIECE);
+        }
+    }
+
+    private final Cell[] cells;
+    private final SpriteCache sprites = new SpriteCache(); // shared by every board
+    private final Timer timer = new Timer(1000 / FRAMES_PER_SECOND, e -> nextFrame());
+
+    // Layout
+    private int tileSize = 0;
+    private int pieceSize;
+    private int pieceMargin;
+    private int layoutWidth = -1;
+    private int layoutHeight = -1;
+    private GraphicsConfiguration layoutConfiguration;
+
+    // Frame times
+    private final LatencyHistogram updateTimes = new LatencyHistogram();
+    private final LatencyHistogram paintTimes = new LatencyHistogram();
+    private long lastReport = System.nanoTime();
+
+    public ObserverGrid(ObservedGame[] games) {
+        cells = new Cell[games.length];
+        for (int i = 0; i < games.length; i++) {
+            cells[i] = new Cell(games[i]);
+        }
+        sprites.put(BOARD_SPRITE, new ImageIcon(getClass().getResource("/whiteBoard.png")).getImage(), Transparency.OPAQUE);
+        sprites.put(LAST_MOVE_SPRITE, new ImageIcon(getClass().getResource("/lastMove.png")).getImage());
+        for (String piece : PIECE_SPRITES) {
+            sprites.put(piece, new ImageIcon(getClass().getResource("/pieces/" + piece + ".png")).getImage());
+        }
+        setOpaque(true);
+    }
+
+    /**
+     * Shows the grid in a window of its own and starts drawing frames.
+     */
+    public void showWindow() {
+        JFrame frame = new JFrame("Chess Observer");
+        frame.add(this);
+        setPreferredSize(new Dimension(1280, 720));
+        frame.pack();
+        frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+        frame.setLocationRelativeTo(null);
+        frame.setVisible(true);
+        timer.start();
+    }
+
+    /**
+     * Redraws the squares that changed on every board, then repaints the area they cover with a
+     * single call. Runs on the event dispatch thread.
+     */
+    void nextFrame() {
+        long start = System.nanoTime();
+        updateLayout();
+        Rectangle dirty = null;
+        for (Cell cell : cells) {
+            if (cell.game.copyIfChanged(cell.pieces, cell.lastMove) && cell.image != null) {
+                Rectangle changed = drawChanges(cell);
+                if (changed != null) {
+                    dirty = dirty == null ? changed : dirty.union(changed);
+                }
+            }
+        }
+        if (dirty != null) {
+            repaint(dirty);
+        }
+        updateTimes.record(System.nanoTime() - start);
+        if (start - lastReport >= REPORT_NANOS) {
+            report(start);
+        }
+    }
+
+    private void report(long now) {
+        double seconds = (now - lastReport) / 1e9;
+        Log.debug("Observer grid: {} frames/s, update p99 {}us, paint p99 {}us", Math.round(paintTimes.count() / seconds),
+                updateTimes.percentile(0.99) / 1000, paintTimes.percentile(0.99) / 1000);
+        updateTimes.reset();
+        paintTimes.reset();
+        lastReport = now;
+    }
+
+    // Places the boards in as square a grid as fits the panel, and redraws them if their size changed
+    private void updateLayout() {
+        GraphicsConfiguration gc = getGraphicsConfiguration();
+        if (getWidth() == layoutWidth && getHeight() == layoutHeight && gc == layoutConfiguration) {
+            return;
+        }
+        layoutWidth = getWidth();
+        layoutHeight = getHeight();
+        layoutConfiguration = gc;
+        sprites.invalidate(); // The sizes drawn so far are not drawn any more
+        int columns = (int) Math.ceil(Math.sqrt(cells.length));
+        int rows = (cells.length + columns - 1) / columns;
+        int cellSize = Math.min(layoutWidth / columns, layoutHeight / rows);
+        int left = (layoutWidth - columns * cellSize) / 2;
+        int top = (layoutHeight - rows * cellSize) / 2;
+        tileSize = Math.max(cellSize - GAP, 0) / BOARD_SIZE;
+        pieceSize = tileSize * 8 / 10;
+        pieceMargin = (tileSize - pieceSize) / 2;
+
+        int boardSize = tileSize * BOARD_SIZE;
+        for (int i = 0; i < cells.length; i++) {
+            Cell cell = cells[i];
+            cell.x = left + i % columns * cellSize + GAP / 2;
+            cell.y = top + i / columns * cellSize + GAP / 2;
+            cell.image = null;
+            if (tileSize == 0) {
+                continue;
+            }
+            cell.image = gc != null ? gc.createCompatibleImage(boardSize, boardSize, Transparency.OPAQUE)
+                    : new BufferedImage(boardSize, boardSize, BufferedImage.TYPE_INT_RGB);
+            Graphics2D g = cell.image.createGraphics();
+            g.drawImage(sprites.get(BOARD_SPRITE, boardSize, boardSize, gc), 0, 0, null);
+            g.dispose();
+            Arrays.fill(cell.drawnPieces, BoardState.NO_PIECE);
+            Arrays.fill(cell.drawnHighlights, false);
+            drawChanges(cell);
+        }
+        repaint();
+    }
+
+    /**
+     * Redraws the squares of a board whose piece or highlight changed.
+     *
+     * @return the area of the panel they cover, or null if none changed
+     */
+    private Rectangle drawChanges(Cell cell) {
+        Graphics2D g = null;
+        Rectangle changed = null;
+        for (int row = 0; row < BOARD_SIZE; row++) {
+            for (int col = 0; col < BOARD_SIZE; col++) {
+                int square = BoardState.square(row, col, 1);
+                int piece = cell.pieces[square];
+                boolean highlight = square == cell.lastMove[0] || square == cell.lastMove[1];
+                if (piece == cell.drawnPieces[square] && highlight == cell.drawnHighlights[square]) {
+                    continue;
+                }
+                if (g == null) {
+                    g = cell.image.createGraphics();
+                }
+                drawSquare(g, col * tileSize, row * tileSize, piece, highlight);
+                cell.drawnPieces[square] = piece;
+                cell.drawnHighlights[square] = highlight;
+                Rectangle tile = new Rectangle(cell.x + col * tileSize, cell.y + row * tileSize, tileSize, tileSize);
+                changed = changed == null ? tile : changed.union(tile);
+            }
+        }
+        if (g != null) {
+            g.dispose();
+        }
+        return changed;
+    }
+
+    private void drawSquare(Graphics2D g, int x, int y, int piece, boolean highlight) {
+        GraphicsConfiguration gc = layoutConfiguration;
+        int boardSize = tileSize * BOARD_SIZE;
+        Image board = sprites.get(BOARD_SPRITE, boardSize, boardSize, gc);
+        g.drawImage(board, x, y, x + tileSize, y + tileSize, x, y, x + tileSize, y + tileSize, null);
+        if (highlight) {
+            g.drawImage(sprites.get(LAST_MOVE_SPRITE, tileSize, tileSize, gc), x, y, null);
+        }
+        if (piece != BoardState.NO_PIECE) {
+            g.drawImage(sprites.get(PIECE_SPRITES[piece], pieceSize, pieceSize, gc), x + pieceMargin, y + pieceMargin, null);
+        }
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        long start = System.nanoTime();
+        Rectangle clip = g.getClipBounds();
+        g.setColor(Color.DARK_GRAY);
+        g.fillRect(clip.x, clip.y, clip.width, clip.height);
+        int boardSize = tileSize * BOARD_SIZE;
+        for (Cell cell : cells) {
+            if (cell.image != null && clip.intersects(cell.x, cell.y, boardSize, boardSize)) {
+                g.drawImage(cell.image, cell.x, cell.y, null);
+            }
+        }
+        paintTimes.record(System.nanoTime() - start);
+    }
+
+    public static void main(String[] args) {
+        int boards = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_BOARDS;
+        String[] address = (args.length > 1 ? args[1] : DEFAULT_ADDRESS).split(":");
+        ObservedGame[] games = new ObservedGame[boards];
+        for (int i = 0; i < boards; i++) {
+            games[i] = new ObservedGame(address[0], Integer.parseInt(address[1]));
+            games[i].start();
+        }
+        SwingUtilities.invokeLater(() -> new ObserverGrid(games).showWindow());
+    }
+}
@@ -0,0 +1,191 @@
+import java.util.Arrays;
+
+/**
+ * Counts the leaf nodes of the move tree to check the move generator against known results
+ * and to measure its speed. The suite also checks the hash and piece-square score that BoardState
+ * updates with each move against a recomputation from scratch.
+ *
+ * <pre>
+ * java Perft                       run the standard positions and report nodes/second
+ * java Perft perft [depth] [fen]   count the nodes of one position
+ * java Perft divide [depth] [fen]  count the nodes below each root move
+ * </pre>
+ */
+public class Perft {
+    private static final int MAX_DEPTH = 16;
+    private static final int CHECK_DEPTH = 3; // of the incremental state check, which visits every node
+
+    // Standard positions with their node counts from depth 1 upwards
+    private static final String[] SUITE_NAMES = {"Initial", "Kiwipete", "Position 3", "Position 4", "Position 5", "Position 6"};
+    private static final String[] SUITE_FENS = {
+            BoardState.START_FEN,
+            "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+            "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+            "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1",
+            "rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8",
+            "r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10"
+    };
+    private static final long[][] SUITE_NODES = {
+            {20, 400, 8902, 197281, 4865609, 119060324},
+            {48, 2039, 97862, 4085603, 193690690},
+            {14, 191, 2812, 43238, 674624, 11030083},
+            {6, 264, 9467, 422333, 15833292},
+            {44, 1486, 62379, 2103487, 89941194},
+            {46, 2079, 89890, 3894594, 164075551}
+    };
+    private static final int[] SUITE_DEPTHS = {5, 4, 5, 4, 4, 4};
+
+    private final BoardState state = new BoardState();
+    private final MoveList[] moveLists = new MoveList[MAX_DEPTH + 1];
+
+    public Perft() {
+        for (int ply = 0; ply <= MAX_DEPTH; ply++) {
+            moveLists[ply] = new MoveList();
+        }
+    }
+
+    /**
+     * Counts the positions reached after exactly {@code depth} moves from the given position.
+     */
+    public long perft(BoardState root, int depth) {
+        state.copyFrom(root);
+        return perft(0, depth);
+    }
+
+    /**
+     * Prints the node count below each legal move of the position and returns the total.
+     */
+    public long divide(BoardState root, int depth) {
+        state.copyFrom(root);
+        MoveList moves = moveLists[0];
+        MoveGenerator.generateLegal(state, moves);
+        long total = 0;
+        for (int i = 0; i < moves.size(); i++) {
+            state.makeMove(moves.get(i));
+            long nodes = depth <= 1 ? 1 : perft(1, depth - 1);
+            state.unmakeMove();
+            System.out.println(Move.toString(moves.get(i)) + ": " + nodes);
+            total += nodes;
+        }
+        System.out.println("Total: " + total);
+        return total;
+    }
+
+    /**
+     * Plays every line of up to {@code depth} moves and compares the incrementally updated hash and
+     * piece-square score with a recomputation after each move and each take-back.
+     *
+     * @return the number of positions where they differ
+     */
+    public long checkIncremental(BoardState root, int depth) {
+        state.copyFrom(root);
+        return (incrementalMismatch() ? 1 : 0) + checkIncremental(0, depth);
+    }
+
+    private long checkIncremental(int ply, int depth) {
+        if (depth == 0) {
+            return 0;
+        }
+        MoveList moves = moveLists[ply];
+        MoveGenerator.generateLegal(state, moves);
+        long mismatches = 0;
+        for (int i = 0; i < moves.size(); i++) {
+            state.makeMove(moves.get(i));
+            if (incrementalMismatch()) {
+                mismatches++;
+            }
+            mismatches += checkIncremental(ply + 1, depth - 1);
+            state.unmakeMove();
+            if (incrementalMismatch()) {
+                mismatches++;
+            }
+        }
+        return mismatches;
+    }
+
+    private boolean incrementalMismatch() {
+        return state.psqtScore() != Evaluator.computePsqtScore(state) || state.hash() != state.computeHash();
+    }
+
+    private long perft(int ply, int depth) {
+        MoveList moves = moveLists[ply];
+        MoveGenerator.generateLegal(state, moves);
+        if (depth <= 1) {
+            return depth == 1 ? moves.size() : 1; // Bulk counting at the last ply
+        }
+
+        long nodes = 0;
+        for (int i = 0; i < moves.size(); i++) {
+            state.makeMove(moves.get(i));
+            nodes += perft(ply + 1, depth - 1);
+            state.unmakeMove();
+        }
+        return nodes;
+    }
+
+    /**
+     * Runs every standard position up to its suite depth, or to {@code maxDepth} if lower.
+     *
+     * @return true if every count matched
+     */
+    public boolean runSuite(int maxDepth) {
+        BoardState state = new BoardState();
+        boolean passed = true;
+        long totalNodes = 0;
+        long totalNanos = 0;
+
+        for (int i = 0; i < SUITE_FENS.length; i++) {
+            state.setFen(SUITE_FENS[i]);
+            int depth = Math.min(maxDepth, Math.min(SUITE_DEPTHS[i], SUITE_NODES[i].length));
+            long start = System.nanoTime();
+            long nodes = perft(state, depth);
+            long elapsed = System.nanoTime() - start;
+            long expected = SUITE_NODES[i][depth - 1];
+
+            long mismatches = checkIncremental(state, Math.min(depth, CHECK_DEPTH));
+            boolean ok = nodes == expected;
+            passed &= ok && mismatches == 0;
+            totalNodes += nodes;
+            totalNanos += elapsed;
+            System.out.printf("%-10s depth %d: %,d nodes (%s) in %d ms, %,d nodes/s%s%n",
+                    SUITE_NAMES[i], depth, nodes, ok ? "ok" : "expected " + expected,
+                    elapsed / 1_000_000, nodesPerSecond(nodes, elapsed),
+                    mismatches == 0 ? "" : ", " + mismatches + " incremental hash or score mismatches");
+        }
+
+        System.out.printf("Total: %,d nodes in %d ms, %,d nodes/s%n",
+                totalNodes, totalNanos / 1_000_000, nodesPerSecond(totalNodes, totalNanos));
+        System.out.println(passed ? "All perft results match" : "Perft MISMATCH");
+        return passed;
+    }
+
+    private static long nodesPerSecond(long nodes, long nanos) {
+        return nanos == 0 ? 0 : nodes * 1_000_000_000L / nanos;
+    }
+
+    public static void main(String[] args) {
+        Perft perft = new Perft();
+        if (args.length == 0 || args[0].equals("suite")) {
+            int maxDepth = args.length > 1 ? Integer.parseInt(args[1]) : MAX_DEPTH;
+            System.exit(perft.runSuite(maxDepth) ? 0 : 1);
+        }
+
+        int depth = args.length > 1 ? Math.min(Integer.parseInt(args[1]), MAX_DEPTH) : 5;
+        BoardState state = new BoardState();
+        state.setFen(args.length > 2 ? String.join(" ", Arrays.copyOfRange(args, 2, args.length)) : BoardState.START_FEN);
+
+        long start = System.nanoTime();
+        long nodes = switch (args[0]) {
+            case "perft" -> perft.perft(state, depth);
+            case "divide" -> perft.divide(state, depth);
+            default -> {
+                System.err.println("Usage: java Perft [suite [maxDepth] | perft depth [fen] | divide depth [fen]]");
+                System.exit(2);
+                yield 0;
+            }
+        };
+        long elapsed = System.nanoTime() - start;
+        System.out.printf("%s depth %d: %,d nodes in %d ms, %,d nodes/s%n",
+                state.toFen(), depth, nodes, elapsed / 1_000_000, nodesPerSecond(nodes, elapsed));
+    }
+}
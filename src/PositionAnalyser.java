@@ -0,0 +1,140 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Analyses positions with a Lazy SMP search: every thread searches the same root with its own
+ * SearchEngine, and the threads share what they find through one TranspositionTable.
+ * <p>
+ * The calling thread runs the main search and the helpers are stopped when it returns.
+ * With a single thread the table is cleared before each analysis, so a search limited by depth
+ * rather than time always gives the same result for the same position.
+ *
+ * <pre>
+ * java PositionAnalyser [threads] [millis] [fen]   analyse one position, the initial one by default
+ * </pre>
+ */
+public class PositionAnalyser implements AutoCloseable {
+    public static final int DEFAULT_THREADS = Integer.getInteger("chess.threads", Runtime.getRuntime().availableProcessors());
+
+    /**
+     * Result of analysing one position. The score is in centipawns from the side to move's point of view,
+     * and hashfull is the per mille of the transposition table filled by this search.
+     */
+    public record Analysis(int move, int score, int depth, long nodes, long millis, int hashfull) {
+        @Override
+        public String toString() {
+            return String.format("best %s score %d depth %d nodes %,d time %d ms hashfull %d",
+                    Move.toString(move), score, depth, nodes, millis, hashfull);
+        }
+    }
+
+    private final TranspositionTable table;
+    private final SearchEngine[] engines;
+    private final ExecutorService helpers;
+
+    public PositionAnalyser(int threads, int hashMegabytes) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("At least one search thread is needed: " + threads);
+        }
+        table = new TranspositionTable(hashMegabytes);
+        engines = new SearchEngine[threads];
+        for (int i = 0; i < threads; i++) {
+            engines[i] = new SearchEngine(table, i);
+        }
+        helpers = threads == 1 ? null : Executors.newFixedThreadPool(threads - 1, Threads.daemonFactory("chess-analyser-"));
+    }
+
+    public int getThreads() {
+        return engines.length;
+    }
+
+    /**
+     * Searches the position until the time runs out or {@code maxDepth} is reached.
+     * A time of 0 or less searches to {@code maxDepth} without a time limit.
+     */
+    public Analysis analyse(BoardState position, long timeMillis, int maxDepth) {
+        long start = System.nanoTime();
+        if (engines.length == 1) {
+            table.clear();
+        }
+        table.newSearch(); // Once for the main search and its helpers
+        for (SearchEngine engine : engines) {
+            engine.resume();
+        }
+
+        List<Future<?>> running = new ArrayList<>();
+        for (int i = 1; i < engines.length; i++) {
+            SearchEngine helper = engines[i];
+            running.add(helpers.submit(() -> helper.findBestMove(position, timeMillis, maxDepth)));
+        }
+        SearchEngine main = engines[0];
+        int move = main.findBestMove(position, timeMillis, maxDepth);
+
+        for (int i = 1; i < engines.length; i++) {
+            engines[i].stop();
+        }
+        long nodes = main.getNodes();
+        for (int i = 0; i < running.size(); i++) {
+            try {
+                running.get(i).get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Helper search failed", e.getCause());
+            }
+            nodes += engines[i + 1].getNodes();
+        }
+        return new Analysis(move, main.getBestScore(), main.getCompletedDepth(), nodes, (System.nanoTime() - start) / 1_000_000,
+                table.hashfull());
+    }
+
+    /**
+     * Analyses the position before every move of a game, such as the BoardState of a finished ChessGame.
+     *
+     * @return one analysis for each move played, in order
+     */
+    public List<Analysis> analyseGame(BoardState game, long timeMillisPerMove, int maxDepth) {
+        BoardState position = new BoardState();
+        position.copyFrom(game);
+        int[] moves = new int[position.ply()];
+        for (int i = moves.length - 1; i >= 0; i--) {
+            moves[i] = position.lastMove();
+            position.unmakeMove();
+        }
+
+        List<Analysis> analyses = new ArrayList<>();
+        for (int move : moves) {
+            analyses.add(analyse(position, timeMillisPerMove, maxDepth));
+            position.makeMove(move);
+        }
+        return analyses;
+    }
+
+    @Override
+    public void close() {
+        for (SearchEngine engine : engines) {
+            engine.stop();
+        }
+        if (helpers != null) {
+            helpers.shutdownNow();
+        }
+    }
+
+    public static void main(String[] args) {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_THREADS;
+        long millis = args.length > 1 ? Long.parseLong(args[1]) : 5000;
+        BoardState state = new BoardState();
+        state.setFen(args.length > 2 ? String.join(" ", Arrays.copyOfRange(args, 2, args.length)) : BoardState.START_FEN);
+
+        try (PositionAnalyser analyser = new PositionAnalyser(threads, TranspositionTable.DEFAULT_SIZE_MB)) {
+            Analysis analysis = analyser.analyse(state, millis, SearchEngine.MAX_PLY);
+            System.out.printf("%s%n%d threads: %s, %,d nodes/s%n", state.toFen(), threads, analysis,
+                    analysis.millis() == 0 ? 0 : analysis.nodes() * 1000 / analysis.millis());
+        }
+    }
+}
@@ -0,0 +1,358 @@
+import java.util.Arrays;
+
+/**
+ * Chess engine: negamax alpha-beta search with iterative deepening, quiescence search
+ * and move ordering by MVV-LVA, killer moves and history, within a time budget per move.
+ * Leaves are scored by the incremental Evaluator.
+ * The search plays moves on its own BoardState with make/unmake and reuses its move buffers,
+ * so it does not allocate while searching. Results are kept in a TranspositionTable,
+ * which may be shared with other engines.
+ * <p>
+ * Helper engines of a parallel search (thread index above 0) skip some iteration depths,
+ * so threads sharing a table spread out over different depths instead of repeating each other.
+ */
+public class SearchEngine {
+    public static final int INFINITY = 32000;
+    public static final int MATE = 31000;
+    public static final int MAX_PLY = 64;
+
+    // Move ordering scores
+    private static final int BEST_MOVE_SCORE = 1_000_000;
+    private static final int CAPTURE_SCORE = 100_000;
+    private static final int PROMOTION_SCORE = 90_000;
+    private static final int FIRST_KILLER_SCORE = 80_000;
+    private static final int SECOND_KILLER_SCORE = 70_000;
+    private static final int HISTORY_LIMIT = 60_000;
+
+    // Depth skipping pattern of helper threads, cycling every 20 helpers
+    private static final int[] SKIP_SIZE = {1, 1, 2, 2, 2, 2, 3, 3, 3, 3, 3, 3, 4, 4, 4, 4, 4, 4, 4, 4};
+    private static final int[] SKIP_PHASE = {0, 1, 0, 1, 2, 3, 0, 1, 2, 3, 4, 5, 0, 1, 2, 3, 4, 5, 6, 7};
+
+    private final BoardState state = new BoardState();
+    private final TranspositionTable table;
+    private final MoveList[] moveLists = new MoveList[MAX_PLY + 1];
+    private final int[][] moveScores = new int[MAX_PLY + 1][MoveList.CAPACITY];
+    private final int[][] killers = new int[MAX_PLY + 1][2];
+    private final int[][] history = new int[12][64];
+    private final int threadIndex;
+
+    private volatile boolean stopRequested;
+    private long nodes;
+    private long deadline;
+    private boolean stopped;
+    private int bestMove;
+    private int rootBestMove;
+    private int bestScore;
+    private int completedDepth;
+
+    public SearchEngine() {
+        this(new TranspositionTable(TranspositionTable.DEFAULT_SIZE_MB));
+    }
+
+    public SearchEngine(TranspositionTable table) {
+        this(table, 0);
+    }
+
+    /**
+     * @param threadIndex 0 for a main search, or the index of a helper in a parallel search
+     */
+    public SearchEngine(TranspositionTable table, int threadIndex) {
+        this.table = table;
+        this.threadIndex = threadIndex;
+        for (int ply = 0; ply <= MAX_PLY; ply++) {
+            moveLists[ply] = new MoveList();
+        }
+    }
+
+    /**
+     * Searches the position with increasing depth until the time runs out, {@link #stop()} is called
+     * or {@code maxDepth} is reached. A time of 0 or less searches without a time limit.
+     * The caller starts each search with {@link TranspositionTable#newSearch()}, once for all the
+     * engines of a parallel search.
+     *
+     * @return the best move found, or Move.NONE if the side to move has no legal move
+     */
+    public int findBestMove(BoardState position, long timeMillis, int maxDepth) {
+        state.copyFrom(position);
+        deadline = timeMillis > 0 ? System.nanoTime() + timeMillis * 1_000_000 : Long.MAX_VALUE;
+        stopped = false;
+        nodes = 0;
+        completedDepth = 0;
+        for (int[] plyKillers : killers) {
+            plyKillers[0] = Move.NONE;
+            plyKillers[1] = Move.NONE;
+        }
+        for (int[] pieceHistory : history) {
+            Arrays.fill(pieceHistory, 0);
+        }
+
+        MoveList rootMoves = moveLists[0];
+        MoveGenerator.generateLegal(state, rootMoves);
+        if (rootMoves.size() == 0) {
+            return Move.NONE;
+        }
+        bestMove = rootMoves.get(0);
+        bestScore = 0;
+
+        for (int depth = 1; depth <= Math.min(maxDepth, MAX_PLY); depth++) {
+            if (skipDepth(depth)) {
+                continue;
+            }
+            rootBestMove = Move.NONE;
+            int score = negamax(depth, 0, -INFINITY, INFINITY);
+            // An interrupted iteration still searched the previous best move first, so any better move it found is safe
+            if (rootBestMove != Move.NONE) {
+                bestMove = rootBestMove;
+            }
+            if (stopped) {
+                break;
+            }
+            bestScore = score;
+            completedDepth = depth;
+            if (Math.abs(score) >= MATE - MAX_PLY) {
+                break; // A forced mate will not get any better
+            }
+        }
+        return bestMove;
+    }
+
+    private boolean skipDepth(int depth) {
+        if (threadIndex == 0 || depth == 1) {
+            return false;
+        }
+        int i = (threadIndex - 1) % SKIP_SIZE.length;
+        return ((depth + SKIP_PHASE[i]) / SKIP_SIZE[i]) % 2 != 0;
+    }
+
+    /**
+     * Asks a search running on another thread to return as soon as possible.
+     * The request stays in force until {@link #resume()} is called.
+     */
+    public void stop() {
+        stopRequested = true;
+    }
+
+    public void resume() {
+        stopRequested = false;
+    }
+
+    private int negamax(int depth, int ply, int alpha, int beta) {
+        if (isTimeUp()) {
+            return 0;
+        }
+        if (ply > 0 && (state.halfmoveClock() >= 100 || state.repetitions() > 0)) {
+            return 0;
+        }
+        boolean inCheck = state.inCheck();
+        if (inCheck) {
+            depth++; // Check extension
+        }
+        if (depth <= 0) {
+            return quiesce(ply, alpha, beta);
+        }
+        if (ply >= MAX_PLY) {
+            return evaluate();
+        }
+
+        long entry = table.probe(state.hash());
+        int hashMove = TranspositionTable.move(entry);
+        if (entry != 0 && ply > 0 && TranspositionTable.depth(entry) >= depth) {
+            int score = fromTable(TranspositionTable.score(entry), ply);
+            int bound = TranspositionTable.bound(entry);
+            if (bound == TranspositionTable.EXACT
+                    || (bound == TranspositionTable.LOWER && score >= beta)
+                    || (bound == TranspositionTable.UPPER && score <= alpha)) {
+                return score;
+            }
+        }
+
+        MoveList moves = moveLists[ply];
+        MoveGenerator.generateLegal(state, moves);
+        if (moves.size() == 0) {
+            return inCheck ? -MATE + ply : 0;
+        }
+        scoreMoves(ply, moves, ply == 0 ? bestMove : hashMove);
+
+        int originalAlpha = alpha;
+        int best = -INFINITY;
+        int nodeBestMove = Move.NONE;
+        for (int i = 0; i < moves.size(); i++) {
+            int move = pickMove(ply, moves, i);
+            int piece = state.pieceAt(Move.from(move));
+            state.makeMove(move);
+            int score = -negamax(depth - 1, ply + 1, -beta, -alpha);
+            state.unmakeMove();
+            if (stopped) {
+                return 0;
+            }
+
+            if (score > best) {
+                best = score;
+                if (score > alpha) {
+                    alpha = score;
+                    nodeBestMove = move;
+                    if (ply == 0) {
+                        rootBestMove = move;
+                    }
+                    if (score >= beta) {
+                        if (!Move.isCapture(move) && !Move.isPromotion(move)) {
+                            updateQuietStats(ply, move, piece, depth);
+                        }
+                        break;
+                    }
+                }
+            }
+        }
+
+        int bound = best >= beta ? TranspositionTable.LOWER
+                : best > originalAlpha ? TranspositionTable.EXACT : TranspositionTable.UPPER;
+        table.store(state.hash(), nodeBestMove, toTable(best, ply), depth, bound);
+        return best;
+    }
+
+    // Mate scores are stored as distance from the stored position rather than from the root
+    private static int toTable(int score, int ply) {
+        return score >= MATE - MAX_PLY * 2 ? score + ply : score <= -MATE + MAX_PLY * 2 ? score - ply : score;
+    }
+
+    private static int fromTable(int score, int ply) {
+        return score >= MATE - MAX_PLY * 2 ? score - ply : score <= -MATE + MAX_PLY * 2 ? score + ply : score;
+    }
+
+    /**
+     * Searches captures only, so positions are not evaluated in the middle of an exchange.
+     */
+    private int quiesce(int ply, int alpha, int beta) {
+        if (isTimeUp()) {
+            return 0;
+        }
+        if (ply >= MAX_PLY) {
+            return evaluate();
+        }
+
+        MoveList moves = moveLists[ply];
+        int best;
+        if (state.inCheck()) {
+            // Every evasion is searched, as standing pat is not an option in check
+            MoveGenerator.generateLegal(state, moves);
+            if (moves.size() == 0) {
+                return -MATE + ply;
+            }
+            best = -INFINITY;
+        } else {
+            best = evaluate();
+            if (best >= beta) {
+                return best;
+            }
+            alpha = Math.max(alpha, best);
+            MoveGenerator.generateCaptures(state, moves);
+        }
+        scoreMoves(ply, moves, Move.NONE);
+
+        for (int i = 0; i < moves.size(); i++) {
+            state.makeMove(pickMove(ply, moves, i));
+            int score = -quiesce(ply + 1, -beta, -alpha);
+            state.unmakeMove();
+            if (stopped) {
+                return 0;
+            }
+
+            if (score > best) {
+                best = score;
+                if (score > alpha) {
+                    alpha = score;
+                    if (score >= beta) {
+                        break;
+                    }
+                }
+            }
+        }
+        return best;
+    }
+
+    private boolean isTimeUp() {
+        if ((++nodes & 2047) == 0 && (stopRequested || System.nanoTime() > deadline)) {
+            stopped = true;
+        }
+        return stopped;
+    }
+
+    private int evaluate() {
+        return Evaluator.evaluate(state);
+    }
+
+    private void scoreMoves(int ply, MoveList moves, int firstMove) {
+        int[] scores = moveScores[ply];
+        for (int i = 0; i < moves.size(); i++) {
+            int move = moves.get(i);
+            int attacker = state.pieceAt(Move.from(move));
+            if (move == firstMove) {
+                scores[i] = BEST_MOVE_SCORE;
+            } else if (Move.isCapture(move)) {
+                // Most valuable victim first, least valuable attacker breaking ties
+                int victim = Move.flags(move) == Move.EN_PASSANT ? BoardState.PAWN : BoardState.typeOf(state.pieceAt(Move.to(move)));
+                scores[i] = CAPTURE_SCORE + victim * 8 - BoardState.typeOf(attacker);
+            } else if (Move.isPromotion(move)) {
+                scores[i] = PROMOTION_SCORE + Move.promotion(move);
+            } else if (move == killers[ply][0]) {
+                scores[i] = FIRST_KILLER_SCORE;
+            } else if (move == killers[ply][1]) {
+                scores[i] = SECOND_KILLER_SCORE;
+            } else {
+                scores[i] = history[attacker][Move.to(move)];
+            }
+        }
+    }
+
+    /**
+     * Selection sort step: moves the best scored of the remaining moves to {@code index} and returns it.
+     */
+    private int pickMove(int ply, MoveList moves, int index) {
+        int[] scores = moveScores[ply];
+        int best = index;
+        for (int i = index + 1; i < moves.size(); i++) {
+            if (scores[i] > scores[best]) {
+                best = i;
+            }
+        }
+        int move = moves.get(best);
+        if (best != index) {
+            moves.set(best, moves.get(index));
+            moves.set(index, move);
+            int score = scores[best];
+            scores[best] = scores[index];
+            scores[index] = score;
+        }
+        return move;
+    }
+
+    private void updateQuietStats(int ply, int move, int piece, int depth) {
+        if (killers[ply][0] != move) {
+            killers[ply][1] = killers[ply][0];
+            killers[ply][0] = move;
+        }
+        history[piece][Move.to(move)] += depth * depth;
+        if (history[piece][Move.to(move)] > HISTORY_LIMIT) {
+            for (int[] pieceHistory : history) {
+                for (int square = 0; square < 64; square++) {
+                    pieceHistory[square] /= 2;
+                }
+            }
+        }
+    }
+
+    public long getNodes() {
+        return nodes;
+    }
+
+    /**
+     * Score of the best move in centipawns from the side to move's point of view.
+     */
+    public int getBestScore() {
+        return bestScore;
+    }
+
+    public int getCompletedDepth() {
+        return completedDepth;
+    }
+}
@@ -0,0 +1,126 @@
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters of a ChessGameServer: connections, rooms, forwarded moves, bytes on the wire and the time
+ * from reading a message to having forwarded it.
+ * <p>
+ * The selector thread updates them without locking; the report can be read from any thread. It is a
+ * plain-text page in the Prometheus exposition format, served on localhost by {@link #serve(int)}
+ * and written to the log every few seconds by the server.
+ */
+public class ServerMetrics {
+    private final LongAdder connectionsOpened = new LongAdder();
+    private final LongAdder connectionsClosed = new LongAdder();
+    private final LongAdder activeRooms = new LongAdder();
+    private final LongAdder gamesStarted = new LongAdder();
+    private final LongAdder movesForwarded = new LongAdder();
+    private final LongAdder bytesIn = new LongAdder();
+    private final LongAdder bytesOut = new LongAdder();
+    private final LatencyHistogram receiveToForward = new LatencyHistogram();
+    private long lastMoves = 0; // used by tick() only
+    private long lastTick = System.nanoTime();
+    private volatile double movesPerSecond = 0;
+
+    public void connectionOpened() {
+        connectionsOpened.increment();
+    }
+
+    public void connectionClosed() {
+        connectionsClosed.increment();
+    }
+
+    public void roomOpened() {
+        activeRooms.increment();
+        gamesStarted.increment();
+    }
+
+    public void roomClosed() {
+        activeRooms.decrement();
+    }
+
+    public void moveForwarded() {
+        movesForwarded.increment();
+    }
+
+    public void bytesRead(long bytes) {
+        bytesIn.add(bytes);
+    }
+
+    public void bytesWritten(long bytes) {
+        bytesOut.add(bytes);
+    }
+
+    /**
+     * Records the time a move took from being read off its socket until it was sent on.
+     */
+    public void recordForward(long nanos) {
+        receiveToForward.record(nanos);
+    }
+
+    public long activeConnections() {
+        return connectionsOpened.sum() - connectionsClosed.sum();
+    }
+
+    public LatencyHistogram receiveToForward() {
+        return receiveToForward;
+    }
+
+    /**
+     * Updates the move rate; called once a second.
+     */
+    public synchronized void tick() {
+        long now = System.nanoTime();
+        long moves = movesForwarded.sum();
+        movesPerSecond = (moves - lastMoves) * 1e9 / Math.max(now - lastTick, 1);
+        lastMoves = moves;
+        lastTick = now;
+    }
+
+    public String report() {
+        StringBuilder text = new StringBuilder(1024);
+        line(text, "chess_connections_active", activeConnections());
+        line(text, "chess_connections_total", connectionsOpened.sum());
+        line(text, "chess_rooms_active", activeRooms.sum());
+        line(text, "chess_games_started_total", gamesStarted.sum());
+        line(text, "chess_moves_forwarded_total", movesForwarded.sum());
+        text.append("chess_moves_per_second ").append(String.format(Locale.ROOT, "%.1f", movesPerSecond)).append('\n');
+        line(text, "chess_bytes_in_total", bytesIn.sum());
+        line(text, "chess_bytes_out_total", bytesOut.sum());
+        for (double quantile : new double[] {0.5, 0.9, 0.99, 0.999}) {
+            line(text, "chess_receive_to_forward_nanos{quantile=\"" + quantile + "\"}", receiveToForward.percentile(quantile));
+        }
+        line(text, "chess_receive_to_forward_nanos_max", receiveToForward.max());
+        line(text, "chess_receive_to_forward_nanos_count", receiveToForward.count());
+        return text.toString();
+    }
+
+    private static void line(StringBuilder text, String name, long value) {
+        text.append(name).append(' ').append(value).append('\n');
+    }
+
+    /**
+     * Serves the report at http://localhost:port/metrics.
+     */
+    public HttpServer serve(int port) throws IOException {
+        HttpServer http = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        http.createContext("/metrics", exchange -> {
+            byte[] body = report().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        http.setExecutor(Threads.newTaskExecutor("chess-metrics"));
+        http.start();
+        return http;
+    }
+}
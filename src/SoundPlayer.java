@@ -1,29 +1,118 @@
 import javax.sound.sampled.*;
+import java.awt.GraphicsEnvironment;
 import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Plays the game's sound effects.
+ * <p>
+ * Each sound is decoded once, by {@link #preload()} or else before the first sound plays, into a few
+ * Clips that stay open. Playing a
+ * sound rewinds and starts the next of its clips, which returns at once: there is no thread, stream or
+ * decoding per move. Several clips per sound let a sound start again before it has finished.
+ * <p>
+ * In a headless JVM, with {@code chess.sound=false}, or when there is no audio device, sounds are
+ * skipped.
+ */
+public final class SoundPlayer {
+    private static final String[] SOUNDS = {"/Move.wav", "/Capture.wav", "/Select.wav"};
+    private static final int CLIPS_PER_SOUND = 3;
+    private static final boolean ENABLED = !GraphicsEnvironment.isHeadless()
+            && Boolean.parseBoolean(System.getProperty("chess.sound", "true"));
+    private static volatile Map<String, ClipPool> pools; // null until the sounds are loaded
+
+    private SoundPlayer() {
+    }
+
+    // The open clips of one sound, played in turn
+    private static class ClipPool {
+        private final Clip[] clips;
+        private int next = 0;
+
+        ClipPool(Clip[] clips) {
+            this.clips = clips;
+        }
+
+        synchronized void play() {
+            Clip clip = clips[next];
+            next = (next + 1) % clips.length;
+            clip.stop();
+            clip.setFramePosition(0);
+            clip.start();
+        }
+    }
+
+    /**
+     * Loads the sounds now rather than on the first move. Later calls do nothing.
+     */
+    public static void preload() {
+        if (pools == null) {
+            synchronized (SoundPlayer.class) {
+                if (pools == null) {
+                    pools = loadSounds();
+                }
+            }
+        }
+    }
+
+    /**
+     * Plays the move and capture sounds of a game's moves.
+     */
+    public static GameListener gameSounds() {
+        return new GameListener() {
+            @Override
+            public void moveApplied(int playerID, int[] move, boolean capture) {
+                playSound(capture ? "/Capture.wav" : "/Move.wav");
+            }
+        };
+    }
 
-public class SoundPlayer {
     public static void playSound(String resourcePath) {
-        new Thread(() -> {
-            try (InputStream audioSrc = SoundPlayer.class.getResourceAsStream(resourcePath);
-                 BufferedInputStream bufferedIn = new BufferedInputStream(audioSrc);
-                 AudioInputStream audioStream = AudioSystem.getAudioInputStream(bufferedIn)) {
-
-                Clip clip = AudioSystem.getClip();
-                clip.open(audioStream);
-                clip.start();
-
-                // Allow the sound to complete before closing resources
-                clip.addLineListener(event -> {
-                    if (event.getType() == LineEvent.Type.STOP) {
-                        clip.close();
-                    }
-                });
-
-            } catch (UnsupportedAudioFileException | IOException | LineUnavailableException e) {
-                e.printStackTrace();
+        preload();
+        ClipPool pool = pools.get(resourcePath);
+        if (pool != null) {
+            pool.play();
+        }
+    }
+
+    private static Map<String, ClipPool> loadSounds() {
+        Map<String, ClipPool> pools = new HashMap<>();
+        if (!ENABLED) {
+            return pools;
+        }
+        for (String sound : SOUNDS) {
+            try {
+                pools.put(sound, load(sound));
+            } catch (UnsupportedAudioFileException | IOException | LineUnavailableException | IllegalArgumentException e) {
+                // IllegalArgumentException: the system has no line for the format, or no mixer at all
+                Log.warn("Sound {} is not available: {}", sound, e.getMessage());
+            }
+        }
+        return pools;
+    }
+
+    private static ClipPool load(String resourcePath) throws UnsupportedAudioFileException, IOException, LineUnavailableException {
+        try (InputStream audioSrc = SoundPlayer.class.getResourceAsStream(resourcePath);
+             BufferedInputStream bufferedIn = new BufferedInputStream(audioSrc);
+             AudioInputStream audioStream = AudioSystem.getAudioInputStream(bufferedIn)) {
+            AudioFormat format = audioStream.getFormat();
+            byte[] samples = audioStream.readAllBytes();
+            Clip[] clips = new Clip[CLIPS_PER_SOUND];
+            try {
+                for (int i = 0; i < clips.length; i++) {
+                    clips[i] = AudioSystem.getClip();
+                    clips[i].open(format, samples, 0, samples.length);
+                }
+            } catch (LineUnavailableException | IllegalArgumentException e) {
+                for (Clip clip : clips) {
+                    if (clip != null) clip.close();
+                }
+                throw e;
             }
-        }).start();
+            return new ClipPool(clips);
+        }
     }
 }
@@ -0,0 +1,93 @@
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Images of the board and pieces scaled once to the size they are drawn at, so a repaint only copies
+ * pixels instead of rescaling every image. The scaled copies are compatible with the screen, which
+ * lets Java2D keep them in video memory, and are made again only when the board is resized or moves
+ * to a screen with another graphics configuration. An image drawn at several sizes, such as a piece
+ * on the board and the same piece being dragged, keeps one copy per size.
+ */
+public class SpriteCache {
+    private record Key(String name, int width, int height) {
+    }
+
+    private final Map<String, Image> sources = new HashMap<>(); // full-size images by name
+    private final Map<String, Integer> transparencies = new HashMap<>();
+    private final Map<Key, BufferedImage> scaled = new HashMap<>();
+    private GraphicsConfiguration configuration;
+
+    public void put(String name, Image source) {
+        put(name, source, Transparency.TRANSLUCENT);
+    }
+
+    /**
+     * Adds an image, declaring it Transparency.OPAQUE if it has no transparent pixels, which makes drawing it a plain copy.
+     */
+    public void put(String name, Image source, int transparency) {
+        sources.put(name, source);
+        transparencies.put(name, transparency);
+        scaled.keySet().removeIf(key -> key.name().equals(name));
+    }
+
+    public Image source(String name) {
+        return sources.get(name);
+    }
+
+    /**
+     * Drops every scaled image, for example when the board has been resized.
+     */
+    public void invalidate() {
+        scaled.clear();
+    }
+
+    /**
+     * The named image at the given size, scaled now if it was not already.
+     *
+     * @return null if there is no image with that name
+     */
+    public Image get(String name, int width, int height, GraphicsConfiguration gc) {
+        if (gc != configuration) {
+            invalidate();
+            configuration = gc;
+        }
+        Key key = new Key(name, width, height);
+        BufferedImage image = scaled.get(key);
+        if (image != null) {
+            return image;
+        }
+        Image source = sources.get(name);
+        if (source == null || width <= 0 || height <= 0) {
+            return null;
+        }
+        image = scale(source, width, height, transparencies.get(name), gc);
+        scaled.put(key, image);
+        return image;
+    }
+
+    // Halves the image until it is close to the target size, so large reductions stay smooth, then scales bicubically
+    private static BufferedImage scale(Image source, int width, int height, int transparency, GraphicsConfiguration gc) {
+        Image current = source;
+        int currentWidth = source.getWidth(null);
+        int currentHeight = source.getHeight(null);
+        while (currentWidth / 2 >= width && currentHeight / 2 >= height) {
+            currentWidth /= 2;
+            currentHeight /= 2;
+            current = draw(current, currentWidth, currentHeight, Transparency.TRANSLUCENT, null, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        }
+        return draw(current, width, height, transparency, gc, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+    }
+
+    private static BufferedImage draw(Image source, int width, int height, int transparency, GraphicsConfiguration gc, Object interpolation) {
+        BufferedImage image = gc != null ? gc.createCompatibleImage(width, height, transparency)
+                : new BufferedImage(width, height, transparency == Transparency.OPAQUE ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = image.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, interpolation);
+        g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+        g.drawImage(source, 0, 0, width, height, null);
+        g.dispose();
+        return image;
+    }
+}
@@ -0,0 +1,31 @@
+import java.awt.Image;
+import java.awt.image.BufferedImage;
+
+/**
+ * Checks that SpriteCache scales each image once per size, however the sizes it is asked for alternate,
+ * as when the GUI draws the pieces on the board and the piece being dragged.
+ *
+ * <pre>
+ * java SpriteCacheTest
+ * </pre>
+ */
+public class SpriteCacheTest {
+    private static final int LOOKUPS = 100;
+
+    public static void main(String[] args) {
+        SpriteCache sprites = new SpriteCache();
+        sprites.put("wP", new BufferedImage(128, 128, BufferedImage.TYPE_INT_ARGB));
+        Image board = sprites.get("wP", 48, 48, null);
+        Image dragged = sprites.get("wP", 60, 60, null);
+        int rescaled = 0;
+        for (int i = 0; i < LOOKUPS; i++) {
+            boolean onBoard = i % 2 == 0;
+            Image image = onBoard ? sprites.get("wP", 48, 48, null) : sprites.get("wP", 60, 60, null);
+            if (image != (onBoard ? board : dragged)) {
+                rescaled++;
+            }
+        }
+        System.out.println(rescaled == 0 ? "No sprite was rescaled" : rescaled + " of " + LOOKUPS + " lookups rescaled a sprite");
+        System.exit(rescaled == 0 ? 0 : 1);
+    }
+}
@@ -0,0 +1,55 @@
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Where the game runs its blocking work: socket reads, sound playback and similar short or idle tasks.
+ * <p>
+ * These run on virtual threads, which cost a few kilobytes while blocked instead of a whole thread
+ * stack. Setting the system property {@code chess.virtualThreads=false} falls back to platform threads.
+ * CPU-bound work such as engine searches keeps its own fixed pools of platform threads.
+ */
+public final class Threads {
+    public static final boolean VIRTUAL = Boolean.parseBoolean(System.getProperty("chess.virtualThreads", "true"));
+
+    private Threads() {
+    }
+
+    /**
+     * Starts a thread for blocking work. Like virtual threads, fallback platform threads are daemons.
+     */
+    public static Thread start(String name, Runnable task) {
+        return VIRTUAL ? Thread.ofVirtual().name(name).start(task) : startPlatform(name, task);
+    }
+
+    /**
+     * Starts a daemon platform thread, for a loop that keeps its thread busy for the life of the program.
+     */
+    public static Thread startPlatform(String name, Runnable task) {
+        return Thread.ofPlatform().name(name).daemon(true).start(task);
+    }
+
+    /**
+     * Starts a platform thread that keeps the program running until its task returns, for the loop
+     * the program is there for, such as a hosted server or the connection of a game still waiting for
+     * its window.
+     */
+    public static Thread startKeepAlive(String name, Runnable task) {
+        return Thread.ofPlatform().name(name).daemon(false).start(task);
+    }
+
+    /**
+     * An executor that runs each task on its own thread, without limit.
+     */
+    public static ExecutorService newTaskExecutor(String name) {
+        return VIRTUAL ? Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(name + "-", 0).factory())
+                : Executors.newCachedThreadPool(daemonFactory(name + "-"));
+    }
+
+    /**
+     * Daemon platform threads for a fixed-size pool of CPU-bound work, named prefix0, prefix1...
+     */
+    public static ThreadFactory daemonFactory(String prefix) {
+        return Thread.ofPlatform().name(prefix, 0).daemon(true).factory();
+    }
+}
@@ -0,0 +1,126 @@
+import java.util.Arrays;
+
+/**
+ * Fixed-size hash table of search results, shared by any number of search threads without locks.
+ * <p>
+ * Entries live in a flat {@code long[]} as pairs of (key xor data, data). A reader accepts an entry
+ * only if xor-ing the two words gives back its key, so an entry torn by two threads writing at once
+ * is simply treated as missing. Each bucket holds two entries: one kept for the deepest search and
+ * one always replaced.
+ * <p>
+ * Data layout: bits 0-15 move, 16-31 score, 32-39 depth, 40-41 bound, 42-47 search age.
+ */
+public final class TranspositionTable {
+    public static final int DEFAULT_SIZE_MB = Integer.getInteger("chess.hashMb", 16);
+
+    // Bounds; an empty slot has bound 0, so valid data is never 0
+    public static final int EXACT = 1;
+    public static final int LOWER = 2;
+    public static final int UPPER = 3;
+
+    private static final int BUCKET_LONGS = 4;
+    private static final int AGE_MASK = 63;
+
+    private final long[] table;
+    private final long bucketMask;
+    private volatile int age;
+
+    /**
+     * Creates a table using at most the given number of megabytes, rounded down to a power of two.
+     */
+    public TranspositionTable(int megabytes) {
+        long buckets = Long.highestOneBit(Math.max(1, (long) megabytes * 1024 * 1024 / (BUCKET_LONGS * Long.BYTES)));
+        buckets = Math.min(buckets, Integer.highestOneBit(Integer.MAX_VALUE / BUCKET_LONGS));
+        table = new long[(int) buckets * BUCKET_LONGS];
+        bucketMask = buckets - 1;
+    }
+
+    /**
+     * Marks the start of a new search, so entries from older searches are replaced first.
+     * Called once per search, however many threads take part in it.
+     */
+    public synchronized void newSearch() {
+        age = (age + 1) & AGE_MASK;
+    }
+
+    public void clear() {
+        Arrays.fill(table, 0);
+    }
+
+    /**
+     * @return the entry data stored for the key, or 0 if there is none
+     */
+    public long probe(long key) {
+        int index = bucketIndex(key);
+        for (int slot = index; slot < index + BUCKET_LONGS; slot += 2) {
+            long data = table[slot + 1];
+            if ((table[slot] ^ data) == key && data != 0) {
+                return data;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Stores a search result. Mate scores must already be relative to the stored position.
+     */
+    public void store(long key, int move, int score, int depth, int bound) {
+        int index = bucketIndex(key);
+        int currentAge = age;
+
+        // Slot 0 keeps the deepest result unless it is from an older search; slot 1 takes everything else
+        int slot = index + 2;
+        long deepData = table[index + 1];
+        if ((table[index] ^ deepData) == key || deepData == 0 || age(deepData) != currentAge || depth >= depth(deepData)) {
+            slot = index;
+        }
+
+        long oldData = table[slot + 1];
+        if (move == Move.NONE && (table[slot] ^ oldData) == key) {
+            move = move(oldData); // Keep the best move of a previous search of this position
+        }
+        long data = (move & 0xFFFFL) | (score & 0xFFFFL) << 16 | (long) (depth & 0xFF) << 32
+                | (long) bound << 40 | (long) currentAge << 42;
+        table[slot] = key ^ data;
+        table[slot + 1] = data;
+    }
+
+    /**
+     * Per mille of sampled slots used by the current search.
+     */
+    public int hashfull() {
+        int used = 0;
+        int samples = Math.min(1000, table.length / 2);
+        for (int i = 0; i < samples; i++) {
+            long data = table[i * 2 + 1];
+            if (data != 0 && age(data) == age) {
+                used++;
+            }
+        }
+        return samples == 0 ? 0 : used * 1000 / samples;
+    }
+
+    private int bucketIndex(long key) {
+        return (int) ((key >>> 32 ^ key) & bucketMask) * BUCKET_LONGS;
+    }
+
+    public static int move(long data) {
+        return (int) (data & 0xFFFF);
+    }
+
+    public static int score(long data) {
+        return (short) (data >>> 16);
+    }
+
+    public static int depth(long data) {
+        return (int) ((data >>> 32) & 0xFF);
+    }
+
+    public static int bound(long data) {
+        return (int) ((data >>> 40) & 3);
+    }
+
+    private static int age(long data) {
+        return (int) ((data >>> 42) & AGE_MASK);
+    }
+}
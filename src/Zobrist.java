@@ -0,0 +1,69 @@
+/**
+ * Random 64-bit keys for Zobrist hashing of positions.
+ * The keys come from a fixed seed, so a position hashes to the same value in every process and every release.
+ */
+public final class Zobrist {
+    private static final long[][] PIECE_SQUARE = new long[12][64];
+    private static final long[] CASTLING = new long[16];
+    private static final long[] EN_PASSANT_FILE = new long[8];
+    private static final long SIDE_TO_MOVE;
+
+    static {
+        long seed = 0x2545F4914F6CDD1DL;
+        for (long[] squares : PIECE_SQUARE) {
+            for (int square = 0; square < 64; square++) {
+                seed = nextKey(seed);
+                squares[square] = mix(seed);
+            }
+        }
+        // Each combination of castling rights is the xor of the keys of its single rights
+        long[] rights = new long[4];
+        for (int i = 0; i < rights.length; i++) {
+            seed = nextKey(seed);
+            rights[i] = mix(seed);
+        }
+        for (int mask = 0; mask < CASTLING.length; mask++) {
+            for (int i = 0; i < rights.length; i++) {
+                if ((mask & (1 << i)) != 0) {
+                    CASTLING[mask] ^= rights[i];
+                }
+            }
+        }
+        for (int file = 0; file < EN_PASSANT_FILE.length; file++) {
+            seed = nextKey(seed);
+            EN_PASSANT_FILE[file] = mix(seed);
+        }
+        seed = nextKey(seed);
+        SIDE_TO_MOVE = mix(seed);
+    }
+
+    private Zobrist() {
+    }
+
+    public static long piece(int piece, int square) {
+        return PIECE_SQUARE[piece][square];
+    }
+
+    public static long castling(int rights) {
+        return CASTLING[rights];
+    }
+
+    public static long enPassant(int square) {
+        return EN_PASSANT_FILE[Bitboards.file(square)];
+    }
+
+    public static long sideToMove() {
+        return SIDE_TO_MOVE;
+    }
+
+    // SplitMix64
+    private static long nextKey(long seed) {
+        return seed + 0x9E3779B97F4A7C15L;
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}